@@ -1,17 +1,24 @@
 package be.sbs.timekeeper.application.beans;
 
 import be.sbs.timekeeper.application.enums.ProjectStatus;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.io.Serializable;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 @Document
+@JsonFilter(FieldSelection.FILTER)
 @JsonInclude(JsonInclude.Include.NON_NULL)
-public class Project {
+public class Project implements Serializable, Versioned {
+    private static final long serialVersionUID = 1L;
 
     @Id
     private String id;
@@ -20,8 +27,23 @@ public class Project {
     @JsonFormat(pattern = "yyyy-MM-dd")
     private LocalDate deadLine;
     private ProjectStatus status;
-    @Transient
+    /**
+     * Kept up to date by TaskService as tasks are added, moved and deleted.
+     */
+    @JsonProperty(access = Access.READ_ONLY)
     private int numberOfTasks;
+    /**
+     * Totals of the finished sessions, maintained by RollupService. Clients can read but not write them.
+     */
+    @JsonProperty(access = Access.READ_ONLY)
+    private Long workTimeSeconds;
+    @JsonProperty(access = Access.READ_ONLY)
+    private Long sessionCount;
+    @JsonProperty(access = Access.READ_ONLY)
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime lastActivity;
+    @JsonProperty(access = Access.READ_ONLY)
+    private Long version;
 
 	public Project() {
     }
@@ -82,6 +104,40 @@ public class Project {
 		this.numberOfTasks = numberOfTasks;
 	}
 
+    public Long getWorkTimeSeconds() {
+        return workTimeSeconds;
+    }
+
+    public void setWorkTimeSeconds(Long workTimeSeconds) {
+        this.workTimeSeconds = workTimeSeconds;
+    }
+
+    public Long getSessionCount() {
+        return sessionCount;
+    }
+
+    public void setSessionCount(Long sessionCount) {
+        this.sessionCount = sessionCount;
+    }
+
+    public LocalDateTime getLastActivity() {
+        return lastActivity;
+    }
+
+    public void setLastActivity(LocalDateTime lastActivity) {
+        this.lastActivity = lastActivity;
+    }
+
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("Project{");
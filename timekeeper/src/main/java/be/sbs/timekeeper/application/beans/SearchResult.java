@@ -6,6 +6,8 @@ import java.util.List;
 public class SearchResult {
 	private List<Task> tasks;
 	private List<Project> projects;
+	//a source missed its deadline, its list is empty
+	private boolean partial;
 	
 	public SearchResult() {
 		tasks = new ArrayList<>();
@@ -29,4 +31,10 @@ public class SearchResult {
 	public void setProjects(List<Project> projects) {
 		this.projects = projects;
 	}
+	public boolean isPartial() {
+		return partial;
+	}
+	public void setPartial(boolean partial) {
+		this.partial = partial;
+	}
 }
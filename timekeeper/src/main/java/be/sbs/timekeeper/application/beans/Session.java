@@ -1,7 +1,12 @@
 package be.sbs.timekeeper.application.beans;
 
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -9,8 +14,9 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 
 @Document
+@JsonFilter(FieldSelection.FILTER)
 @JsonInclude(JsonInclude.Include.NON_NULL)
-public class Session {
+public class Session implements Versioned {
 	
 	@Id
 	private String id;
@@ -21,6 +27,13 @@ public class Session {
     private LocalDateTime endTime;
     @JsonFormat(pattern = "HH:mm:ss")
     private Duration workTime;
+    /**
+     * Only set (to true) while the session has no endTime, backs the unique "one running session per user" index.
+     */
+    @JsonIgnore
+    private Boolean running;
+    @JsonProperty(access = Access.READ_ONLY)
+    private Long version;
 
     public Session(String id, String taskId, String userId, LocalDateTime startTime, LocalDateTime endTime, Duration workTime) {
         this.id = id;
@@ -82,6 +95,24 @@ public class Session {
 		this.workTime = workTime;
 	}
 
+    public Boolean getRunning() {
+        return running;
+    }
+
+    public void setRunning(Boolean running) {
+        this.running = running;
+    }
+
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
 	@Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("Session{");
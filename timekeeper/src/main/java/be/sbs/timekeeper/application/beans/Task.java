@@ -2,16 +2,23 @@ package be.sbs.timekeeper.application.beans;
 
 import be.sbs.timekeeper.application.enums.Priority;
 import be.sbs.timekeeper.application.enums.TaskStatus;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
 @Document
+@JsonFilter(FieldSelection.FILTER)
 @JsonInclude(JsonInclude.Include.NON_NULL)
-public class Task {
+public class Task implements Serializable, Versioned {
+    private static final long serialVersionUID = 1L;
 	
 	@Id
 	private String id;
@@ -22,6 +29,18 @@ public class Task {
 	private LocalDateTime currentTime;
     private Priority priority;
     private TaskStatus status;
+    /**
+     * Totals of the finished sessions, maintained by RollupService. Clients can read but not write them.
+     */
+    @JsonProperty(access = Access.READ_ONLY)
+    private Long workTimeSeconds;
+    @JsonProperty(access = Access.READ_ONLY)
+    private Long sessionCount;
+    @JsonProperty(access = Access.READ_ONLY)
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime lastActivity;
+    @JsonProperty(access = Access.READ_ONLY)
+    private Long version;
 
     public Task(String id, String name, String description, String projectId, LocalDateTime currentTime, Priority priority, TaskStatus status) {
         this.id = id;
@@ -92,6 +111,40 @@ public class Task {
         this.status = status;
     }
 
+    public Long getWorkTimeSeconds() {
+        return workTimeSeconds;
+    }
+
+    public void setWorkTimeSeconds(Long workTimeSeconds) {
+        this.workTimeSeconds = workTimeSeconds;
+    }
+
+    public Long getSessionCount() {
+        return sessionCount;
+    }
+
+    public void setSessionCount(Long sessionCount) {
+        this.sessionCount = sessionCount;
+    }
+
+    public LocalDateTime getLastActivity() {
+        return lastActivity;
+    }
+
+    public void setLastActivity(LocalDateTime lastActivity) {
+        this.lastActivity = lastActivity;
+    }
+
+    @Override
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("Task{");
@@ -0,0 +1,79 @@
+package be.sbs.timekeeper.application.beans;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Work time of one user on one day, per task. Maintained by TimesheetService as sessions change.
+ */
+@Document(collection = "timesheet")
+public class TimesheetDay {
+
+    @Id
+    @JsonIgnore
+    private String id;
+    private String userId;
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate day;
+    private Map<String, Long> taskSeconds = new LinkedHashMap<>();
+    private long totalSeconds;
+
+    public TimesheetDay() {
+    }
+
+    public TimesheetDay(String userId, LocalDate day) {
+        this.id = idOf(userId, day);
+        this.userId = userId;
+        this.day = day;
+    }
+
+    public static String idOf(String userId, LocalDate day) {
+        return userId + "_" + day;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
+    public Map<String, Long> getTaskSeconds() {
+        return taskSeconds;
+    }
+
+    public void setTaskSeconds(Map<String, Long> taskSeconds) {
+        this.taskSeconds = taskSeconds;
+    }
+
+    public long getTotalSeconds() {
+        return totalSeconds;
+    }
+
+    public void setTotalSeconds(long totalSeconds) {
+        this.totalSeconds = totalSeconds;
+    }
+}
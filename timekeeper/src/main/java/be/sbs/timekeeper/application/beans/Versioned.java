@@ -0,0 +1,12 @@
+package be.sbs.timekeeper.application.beans;
+
+/**
+ * Documents whose version is bumped on every write, the basis of their ETag.
+ * Saves bump it through CollectionVersions, the custom updates increment it themselves.
+ */
+public interface Versioned {
+
+    Long getVersion();
+
+    void setVersion(Long version);
+}
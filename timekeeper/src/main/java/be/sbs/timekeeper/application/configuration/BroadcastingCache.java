@@ -0,0 +1,107 @@
+package be.sbs.timekeeper.application.configuration;
+
+import be.sbs.timekeeper.application.configuration.invalidation.CacheInvalidation;
+import be.sbs.timekeeper.application.configuration.invalidation.InvalidationBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+
+/**
+ * Announces every eviction on the {@link InvalidationBus} and evicts locally what the other instances announce,
+ * so an entity changed through one instance isn't served stale by the others.
+ * The time between an announcement and its eviction here is recorded as timekeeper.cache.invalidation.lag.
+ */
+public class BroadcastingCache implements Cache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BroadcastingCache.class);
+
+    private final Cache delegate;
+    private final InvalidationBus invalidationBus;
+    private final String origin;
+    private final Timer lag;
+
+    public BroadcastingCache(Cache delegate, InvalidationBus invalidationBus, String origin, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.invalidationBus = invalidationBus;
+        this.origin = origin;
+        this.lag = Timer.builder("timekeeper.cache.invalidation.lag")
+                .description("Time between an eviction on another instance and the eviction here")
+                .tag("cache", delegate.getName())
+                .register(meterRegistry);
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return delegate.get(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+        publish(key == null ? null : key.toString());
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        publish(null);
+    }
+
+    private void publish(String key) {
+        try {
+            invalidationBus.publish(new CacheInvalidation(origin, getName(), key, Instant.now()));
+        } catch (RuntimeException e) {
+            //the write itself succeeded, the other instances catch up when their entries expire
+            LOGGER.error("Could not announce invalidation of " + getName() + " " + key, e);
+        }
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        if (origin.equals(invalidation.getOrigin()) || !getName().equals(invalidation.getCacheName())) {
+            return;
+        }
+        if (invalidation.isClear()) {
+            delegate.clear();
+        } else {
+            delegate.evict(invalidation.getKey());
+        }
+        lag.record(Duration.between(invalidation.getPublishedAt(), Instant.now()));
+    }
+}
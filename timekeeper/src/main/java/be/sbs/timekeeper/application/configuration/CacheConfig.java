@@ -1,16 +1,57 @@
 package be.sbs.timekeeper.application.configuration;
 
+import be.sbs.timekeeper.application.configuration.invalidation.InvalidationBus;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @EnableCaching
 public class CacheConfig {
+    public static final String PROJECTS = "Projects";
+    public static final String TASKS = "Tasks";
+    public static final String USERS = "Users";
+
+    @Value("${timekeeper.cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${timekeeper.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    /**
+     * Entities by id, bounded in size and age. Writes evict the entries they change,
+     * here and, through the invalidation bus, on the other instances.
+     */
     @Bean
-    public CacheManager cacheManager(){
-        return new ConcurrentMapCacheManager("Projects");
+    public CacheManager cacheManager(MeterRegistry meterRegistry, InvalidationBus invalidationBus){
+        String origin = invalidationBus.getOrigin();
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(Arrays.asList(
+                createCache(PROJECTS, meterRegistry, invalidationBus, origin),
+                createCache(TASKS, meterRegistry, invalidationBus, origin),
+                createCache(USERS, meterRegistry, invalidationBus, origin)));
+        return cacheManager;
+    }
+
+    private Cache createCache(String name, MeterRegistry meterRegistry, InvalidationBus invalidationBus, String origin) {
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        //the copying wrapper hides the Caffeine cache from the actuator's automatic binding
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        return new BroadcastingCache(new CopyOnReadCache(new CaffeineCache(name, cache, false)), invalidationBus, origin, meterRegistry);
     }
 }
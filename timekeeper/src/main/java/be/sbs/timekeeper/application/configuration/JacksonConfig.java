@@ -0,0 +1,18 @@
+package be.sbs.timekeeper.application.configuration;
+
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * The documents name a property filter for ?fields=, responses without a selection write every property.
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldSelectionFilter() {
+        return builder -> builder.filters(FieldSelection.defaultFilterProvider());
+    }
+}
@@ -0,0 +1,20 @@
+package be.sbs.timekeeper.application.configuration.converter;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.WritingConverter;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+
+/**
+ * Stores durations as int64 seconds, only registered in the native temporal format.
+ */
+@WritingConverter
+public class DurationToLongConverter implements Converter<Duration, Long> {
+
+    @Nullable
+    @Override
+    public Long convert(Duration source) {
+        return source.getSeconds();
+    }
+}
@@ -0,0 +1,17 @@
+package be.sbs.timekeeper.application.configuration.converter;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+
+@ReadingConverter
+public class LongToDurationConverter implements Converter<Long, Duration> {
+
+    @Nullable
+    @Override
+    public Duration convert(Long source) {
+        return Duration.ofSeconds(source);
+    }
+}
@@ -1,30 +1,46 @@
 package be.sbs.timekeeper.application.configuration.converter;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 @Configuration
 @EnableMongoRepositories("be.sbs.timekeeper.application.repository")
 public class PersistenceConfiguration {
 
+    public static final String STRING_FORMAT = "string";
+    public static final String NATIVE_FORMAT = "native";
+
+    /**
+     * In the "string" format dates are written as yyyy-MM-dd'T'HH:mm:ss strings and durations as ISO-8601 strings.
+     * In the "native" format they are written as BSON dates and int64 seconds.
+     * Both formats are always readable, so documents can be migrated while the application runs.
+     */
     @Bean
-    public MongoCustomConversions customConversions() {
-        final ArrayList<? extends Converter<? extends Serializable, ? extends Serializable>> converters =
-                new ArrayList<>(Arrays.asList(
-                        new LocalDateTimeToStringConverter(),
-                        new StringToLocalDateTimeConverter(),
-                        new LocalDateToStringConverter(),
-                        new StringToLocalDateConverter(),
-                        new LocalTimeToStringConverter(),
-                        new StringToLocalTimeConverter()
-                ));
+    public MongoCustomConversions customConversions(@Value("${timekeeper.persistence.temporal-format:string}") String temporalFormat) {
+        final List<Converter<?, ?>> converters = new ArrayList<>(Arrays.asList(
+                new StringToLocalDateTimeConverter(),
+                new StringToLocalDateConverter(),
+                new StringToLocalTimeConverter(),
+                new StringToDurationConverter(),
+                new LongToDurationConverter()
+        ));
+        if (NATIVE_FORMAT.equals(temporalFormat)) {
+            converters.add(new DurationToLongConverter());
+        } else {
+            converters.addAll(Arrays.asList(
+                    new LocalDateTimeToStringConverter(),
+                    new LocalDateToStringConverter(),
+                    new LocalTimeToStringConverter()
+            ));
+        }
         return new MongoCustomConversions(converters);
     }
 
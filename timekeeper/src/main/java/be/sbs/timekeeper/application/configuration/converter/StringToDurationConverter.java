@@ -0,0 +1,25 @@
+package be.sbs.timekeeper.application.configuration.converter;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Reads durations stored as ISO-8601 strings (PT1H30M) as well as the HH:mm:ss strings older patches stored.
+ */
+@ReadingConverter
+public class StringToDurationConverter implements Converter<String, Duration> {
+
+    @Nullable
+    @Override
+    public Duration convert(String source) {
+        if (source.startsWith("P") || source.startsWith("-P")) {
+            return Duration.parse(source);
+        }
+        return Duration.ofSeconds(LocalTime.from(DateTimeFormatter.ofPattern("HH:mm:ss").parse(source)).toSecondOfDay());
+    }
+}
@@ -0,0 +1,168 @@
+package be.sbs.timekeeper.application.configuration.converter;
+
+import be.sbs.timekeeper.application.beans.Project;
+import be.sbs.timekeeper.application.beans.Session;
+import be.sbs.timekeeper.application.beans.Task;
+import be.sbs.timekeeper.application.beans.TimesheetDay;
+import be.sbs.timekeeper.application.beans.User;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewrites temporal fields stored as strings into the native format, in place and in batches.
+ * Only documents whose field is still a string are touched, so the migration can be stopped and started again at any time.
+ */
+@Component
+public class TemporalMigration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TemporalMigration.class);
+    private static final long FORMAT_CHECK_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final MongoOperations mongoOperations;
+    private final String temporalFormat;
+    private final int batchSize;
+    private final Map<String, Converter<String, ?>> fields = new LinkedHashMap<>();
+    private final Map<String, FormatCheck> formatChecks = new ConcurrentHashMap<>();
+
+    public TemporalMigration(MongoOperations mongoOperations,
+                             @Value("${timekeeper.persistence.temporal-format:string}") String temporalFormat,
+                             @Value("${timekeeper.persistence.migration-batch-size:1000}") int batchSize) {
+        this.mongoOperations = mongoOperations;
+        this.temporalFormat = temporalFormat;
+        this.batchSize = batchSize;
+
+        StringToLocalDateTimeConverter dateTime = new StringToLocalDateTimeConverter();
+        StringToLocalDateConverter date = new StringToLocalDateConverter();
+        fields.put(key(Session.class, "startTime"), dateTime);
+        fields.put(key(Session.class, "endTime"), dateTime);
+        fields.put(key(Session.class, "workTime"), new StringToDurationConverter());
+        fields.put(key(Task.class, "currentTime"), dateTime);
+        fields.put(key(Task.class, "lastActivity"), dateTime);
+        fields.put(key(Project.class, "deadLine"), date);
+        fields.put(key(Project.class, "lastActivity"), dateTime);
+        fields.put(key(TimesheetDay.class, "day"), date);
+        fields.put(key(User.class, "resetTime"), dateTime);
+    }
+
+    /**
+     * @return the number of documents per collection.field that still store a string
+     */
+    public Map<String, Long> remaining() {
+        Map<String, Long> remaining = new LinkedHashMap<>();
+        fields.keySet().forEach(key -> remaining.put(key, collection(key).count(Filters.type(field(key), BsonType.STRING))));
+        return remaining;
+    }
+
+    /**
+     * Whether some documents still store the field in the other format than the one written now,
+     * so reads that depend on the order of its values have to convert them first.
+     * The answer is kept for a minute, so it turns false at most a minute after the migration reports nothing remaining.
+     */
+    public boolean isMixed(Class<?> type, String field) {
+        String key = key(type, field);
+        FormatCheck check = formatChecks.get(key);
+        if (check == null || check.isOutdated()) {
+            BsonType otherFormat = PersistenceConfiguration.NATIVE_FORMAT.equals(temporalFormat) ? BsonType.STRING : BsonType.DATE_TIME;
+            boolean mixed = collection(key).find(Filters.type(field, otherFormat)).projection(Projections.include("_id")).first() != null;
+            check = new FormatCheck(mixed);
+            formatChecks.put(key, check);
+        }
+        return check.mixed;
+    }
+
+    /**
+     * @return the number of documents migrated per collection.field
+     */
+    public Map<String, Long> migrate() {
+        if (!PersistenceConfiguration.NATIVE_FORMAT.equals(temporalFormat)) {
+            throw new IllegalStateException("Set timekeeper.persistence.temporal-format=native before migrating, "
+                    + "otherwise new writes keep storing strings");
+        }
+        Map<String, Long> migrated = new LinkedHashMap<>();
+        fields.forEach((key, converter) -> migrated.put(key, migrate(key, converter)));
+        return migrated;
+    }
+
+    private long migrate(String key, Converter<String, ?> converter) {
+        MongoCollection<Document> collection = collection(key);
+        String field = field(key);
+        Bson isString = Filters.type(field, BsonType.STRING);
+
+        long migrated = 0;
+        Object lastId = null;
+        while (true) {
+            Bson filter = lastId == null ? isString : Filters.and(isString, Filters.gt("_id", lastId));
+            List<Document> batch = collection.find(filter)
+                    .projection(Projections.include(field))
+                    .sort(Sorts.ascending("_id"))
+                    .limit(batchSize)
+                    .into(new ArrayList<>());
+            if (batch.isEmpty()) {
+                return migrated;
+            }
+
+            List<WriteModel<Document>> updates = new ArrayList<>();
+            for (Document document : batch) {
+                String value = document.getString(field);
+                try {
+                    Object nativeValue = mongoOperations.getConverter().convertToMongoType(converter.convert(value));
+                    //the string check makes a concurrent write by the application win
+                    updates.add(new UpdateOneModel<>(Filters.and(Filters.eq("_id", document.get("_id")), Filters.eq(field, value)),
+                            Updates.set(field, nativeValue)));
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Cannot migrate " + key + " of " + document.get("_id") + ": " + value);
+                }
+            }
+            if (!updates.isEmpty()) {
+                migrated += collection.bulkWrite(updates).getModifiedCount();
+            }
+            lastId = batch.get(batch.size() - 1).get("_id");
+        }
+    }
+
+    private static class FormatCheck {
+        private final boolean mixed;
+        private final long checkedAt = System.currentTimeMillis();
+
+        private FormatCheck(boolean mixed) {
+            this.mixed = mixed;
+        }
+
+        private boolean isOutdated() {
+            return System.currentTimeMillis() - checkedAt > FORMAT_CHECK_INTERVAL_MILLIS;
+        }
+    }
+
+    private MongoCollection<Document> collection(String key) {
+        return mongoOperations.getCollection(key.substring(0, key.indexOf('.')));
+    }
+
+    private static String field(String key) {
+        return key.substring(key.indexOf('.') + 1);
+    }
+
+    private String key(Class<?> type, String field) {
+        return mongoOperations.getCollectionName(type) + "." + field;
+    }
+}
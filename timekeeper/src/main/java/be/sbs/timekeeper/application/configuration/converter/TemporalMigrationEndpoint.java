@@ -0,0 +1,29 @@
+package be.sbs.timekeeper.application.configuration.converter;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Component
+@Endpoint(id = "migration")
+public class TemporalMigrationEndpoint {
+
+    private final TemporalMigration temporalMigration;
+
+    public TemporalMigrationEndpoint(TemporalMigration temporalMigration) {
+        this.temporalMigration = temporalMigration;
+    }
+
+    @ReadOperation
+    public Map<String, Long> remaining() {
+        return temporalMigration.remaining();
+    }
+
+    @WriteOperation
+    public Map<String, Long> migrate() {
+        return temporalMigration.migrate();
+    }
+}
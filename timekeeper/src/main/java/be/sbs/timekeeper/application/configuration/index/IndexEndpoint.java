@@ -0,0 +1,22 @@
+package be.sbs.timekeeper.application.configuration.index;
+
+import be.sbs.timekeeper.application.valueobjects.IndexDriftReport;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+@Component
+@Endpoint(id = "indexes")
+public class IndexEndpoint {
+
+    private final MongoIndexManager mongoIndexManager;
+
+    public IndexEndpoint(MongoIndexManager mongoIndexManager) {
+        this.mongoIndexManager = mongoIndexManager;
+    }
+
+    @ReadOperation
+    public IndexDriftReport indexes() {
+        return mongoIndexManager.drift();
+    }
+}
@@ -0,0 +1,179 @@
+package be.sbs.timekeeper.application.configuration.index;
+
+import be.sbs.timekeeper.application.beans.Project;
+import be.sbs.timekeeper.application.beans.Session;
+import be.sbs.timekeeper.application.beans.Task;
+import be.sbs.timekeeper.application.beans.TimesheetDay;
+import be.sbs.timekeeper.application.beans.User;
+import be.sbs.timekeeper.application.valueobjects.IndexDriftReport;
+import be.sbs.timekeeper.application.valueobjects.IndexDriftReport.CollectionIndexDrift;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition.TextIndexDefinitionBuilder;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Single place where the indexes of every collection are declared.
+ * They are created once all beans are ready, before the web server accepts requests,
+ * and {@link #drift()} compares them with what the database actually has.
+ */
+@Component
+public class MongoIndexManager implements SmartInitializingSingleton {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoIndexManager.class);
+    private static final String ID_INDEX = "_id_";
+    private static final String TEXT = "text";
+
+    private final MongoOperations mongoOperations;
+
+    public MongoIndexManager(MongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    Map<Class<?>, List<IndexDefinition>> declaredIndexes() {
+        Map<Class<?>, List<IndexDefinition>> indexes = new LinkedHashMap<>();
+        indexes.put(Session.class, Arrays.asList(
+                new Index().on("userId", Direction.ASC).on("endTime", Direction.ASC).named("userId_endTime"),
+                new Index().on("taskId", Direction.ASC).on("userId", Direction.ASC).named("taskId_userId"),
+                new Index().on("userId", Direction.ASC).unique()
+                        .partial(PartialIndexFilter.of(Criteria.where("running").is(true)))
+                        .named("userId_running"),
+                new Index().on("running", Direction.ASC).sparse().named("running"),
+                new Index().on("startTime", Direction.ASC).on("_id", Direction.ASC).named("startTime_id"),
+                new Index().on("userId", Direction.ASC).on("startTime", Direction.ASC).on("_id", Direction.ASC).named("userId_startTime_id"),
+                new Index().on("taskId", Direction.ASC).on("startTime", Direction.ASC).on("_id", Direction.ASC).named("taskId_startTime_id")));
+        indexes.put(Task.class, Arrays.asList(
+                new Index().on("projectId", Direction.ASC).named("projectId"),
+                searchIndex()));
+        indexes.put(Project.class, Arrays.asList(
+                searchIndex()));
+        indexes.put(TimesheetDay.class, Arrays.asList(
+                new Index().on("userId", Direction.ASC).on("day", Direction.ASC).named("userId_day")));
+        indexes.put(User.class, Arrays.asList(
+                new Index().on("name", Direction.ASC).unique().named("name"),
+                new Index().on("email", Direction.ASC).unique().named("email"),
+                new Index().on("token", Direction.ASC).unique().sparse().named("token")));
+        return indexes;
+    }
+
+    /**
+     * Backs the keyword search, a match in the name counts more than one in the description.
+     */
+    private static IndexDefinition searchIndex() {
+        return new TextIndexDefinitionBuilder()
+                .onField("name", 3F)
+                .onField("description", 1F)
+                .named("name_description_text")
+                .build();
+    }
+
+    /**
+     * A missing index is logged and only makes queries slower, but a missing unique index lets duplicates in:
+     * userId_running is all that keeps a user from running two sessions. Startup fails when one can't be created,
+     * typically because the collection already holds duplicates that have to be cleaned up first.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<String> missingUniqueIndexes = new ArrayList<>();
+        declaredIndexes().forEach((type, indexes) -> indexes.forEach(index -> {
+            try {
+                mongoOperations.indexOps(type).ensureIndex(index);
+            } catch (RuntimeException e) {
+                String description = index.getIndexOptions().get("name") + " on " + mongoOperations.getCollectionName(type);
+                LOGGER.error("Could not create index " + description, e);
+                if (Boolean.TRUE.equals(index.getIndexOptions().get("unique"))) {
+                    missingUniqueIndexes.add(description);
+                }
+            }
+        }));
+        if (!missingUniqueIndexes.isEmpty()) {
+            throw new IllegalStateException("Could not create the unique indexes " + missingUniqueIndexes);
+        }
+
+        IndexDriftReport report = drift();
+        if (!report.isInSync()) {
+            LOGGER.warn("Indexes differ from the declared ones: " + report.getCollections().entrySet().stream()
+                    .filter(entry -> !entry.getValue().isInSync())
+                    .map(entry -> entry.getKey() + " missing " + entry.getValue().getMissing() + " unexpected " + entry.getValue().getUnexpected())
+                    .collect(Collectors.joining(", ")));
+        }
+    }
+
+    public IndexDriftReport drift() {
+        Map<String, CollectionIndexDrift> collections = new LinkedHashMap<>();
+        declaredIndexes().forEach((type, indexes) -> {
+            String collectionName = mongoOperations.getCollectionName(type);
+
+            Set<String> declared = indexes.stream()
+                    .map(index -> describe(index.getIndexKeys(), index.getIndexOptions()))
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            Set<String> actual = new LinkedHashSet<>();
+            for (Document index : mongoOperations.getCollection(collectionName).listIndexes()) {
+                if (!ID_INDEX.equals(index.getString("name"))) {
+                    actual.add(describe((Document) index.get("key"), index));
+                }
+            }
+
+            List<String> missing = declared.stream().filter(index -> !actual.contains(index)).collect(Collectors.toList());
+            List<String> unexpected = actual.stream().filter(index -> !declared.contains(index)).collect(Collectors.toList());
+            collections.put(collectionName, new CollectionIndexDrift(missing, unexpected));
+        });
+        return new IndexDriftReport(collections);
+    }
+
+    /**
+     * Readable description of an index, equal for a declared index and the index the database reports for it.
+     */
+    private static String describe(Document keys, Document options) {
+        StringBuilder description = new StringBuilder(String.valueOf(options.get("name"))).append(" {");
+        if (keys.containsKey("_fts") || keys.containsValue(TEXT)) {
+            description.append(TEXT).append(' ').append(textWeights(keys, options));
+        } else {
+            description.append(keys.entrySet().stream()
+                    .map(key -> key.getKey() + ": " + (key.getValue() instanceof Number ? ((Number) key.getValue()).intValue() : key.getValue()))
+                    .collect(Collectors.joining(", ")));
+        }
+        description.append('}');
+        if (Boolean.TRUE.equals(options.get("unique"))) description.append(" unique");
+        if (Boolean.TRUE.equals(options.get("sparse"))) description.append(" sparse");
+        if (options.get("partialFilterExpression") instanceof Document) {
+            description.append(" partial ").append(((Document) options.get("partialFilterExpression")).toJson());
+        }
+        return description.toString();
+    }
+
+    /**
+     * The database reports a text index as {_fts, _ftsx} keys with the fields in its weights,
+     * while a declared one lists its fields as keys and only the weights that differ from 1.
+     */
+    private static Map<String, Integer> textWeights(Document keys, Document options) {
+        Map<String, Integer> weights = new TreeMap<>();
+        keys.forEach((field, type) -> {
+            if (TEXT.equals(type)) {
+                weights.put(field, 1);
+            }
+        });
+        if (options.get("weights") instanceof Document) {
+            ((Document) options.get("weights")).forEach((field, weight) -> weights.put(field, ((Number) weight).intValue()));
+        }
+        return weights;
+    }
+}
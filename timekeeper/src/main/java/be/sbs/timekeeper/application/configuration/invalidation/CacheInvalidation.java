@@ -0,0 +1,40 @@
+package be.sbs.timekeeper.application.configuration.invalidation;
+
+import java.time.Instant;
+
+/**
+ * One cache entry (or a whole cache when the key is null) that changed on the instance named by origin.
+ */
+public class CacheInvalidation {
+    private final String origin;
+    private final String cacheName;
+    private final String key;
+    private final Instant publishedAt;
+
+    public CacheInvalidation(String origin, String cacheName, String key, Instant publishedAt) {
+        this.origin = origin;
+        this.cacheName = cacheName;
+        this.key = key;
+        this.publishedAt = publishedAt;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Instant getPublishedAt() {
+        return publishedAt;
+    }
+
+    public boolean isClear() {
+        return key == null;
+    }
+}
@@ -0,0 +1,21 @@
+package be.sbs.timekeeper.application.configuration.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries cache invalidations between the running instances.
+ * Subscribers receive every invalidation, their own included; they skip the ones of their own origin.
+ * Every instance has one bus and publishes under its origin.
+ * Chosen with timekeeper.cache.invalidation-bus: loopback (default, single instance) or mongo.
+ */
+public interface InvalidationBus {
+
+    /**
+     * Identifies this instance in the invalidations it publishes.
+     */
+    String getOrigin();
+
+    void publish(CacheInvalidation invalidation);
+
+    void subscribe(Consumer<CacheInvalidation> subscriber);
+}
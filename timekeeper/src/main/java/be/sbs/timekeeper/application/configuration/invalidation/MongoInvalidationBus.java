@@ -0,0 +1,166 @@
+package be.sbs.timekeeper.application.configuration.invalidation;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Publishes invalidations as documents in a shared collection and follows that collection with a change stream,
+ * so every instance sees the invalidations of the others. Change streams need a replica set.
+ * The documents expire after timekeeper.cache.invalidation-retention-seconds, which also bounds how long
+ * a watcher can be disconnected and still resume where it stopped. After a failure the watcher resumes from the last
+ * invalidation it received; until it has received one there is no point to resume from.
+ */
+@Component
+@ConditionalOnProperty(name = "timekeeper.cache.invalidation-bus", havingValue = "mongo")
+public class MongoInvalidationBus implements InvalidationBus {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MongoInvalidationBus.class);
+    static final String COLLECTION = "cacheInvalidations";
+    private static final List<Integer> RESUME_POINT_LOST = Arrays.asList(260, 280, 286);
+
+    private final MongoOperations mongoOperations;
+    private final long retentionSeconds;
+    private final long retryDelayMillis;
+    private final String origin = UUID.randomUUID().toString();
+    private final List<Consumer<CacheInvalidation>> subscribers = new CopyOnWriteArrayList<>();
+    private final Thread watcher;
+    private volatile boolean running;
+    private BsonDocument resumeToken;
+
+    public MongoInvalidationBus(MongoOperations mongoOperations,
+                                @Value("${timekeeper.cache.invalidation-retention-seconds:3600}") long retentionSeconds,
+                                @Value("${timekeeper.cache.invalidation-retry-delay-millis:1000}") long retryDelayMillis) {
+        this.mongoOperations = mongoOperations;
+        this.retentionSeconds = retentionSeconds;
+        this.retryDelayMillis = retryDelayMillis;
+        this.watcher = new Thread(this::watch, "cache-invalidation-watcher");
+        this.watcher.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        mongoOperations.indexOps(COLLECTION).ensureIndex(new Index().on("publishedAt", Direction.ASC)
+                .expire(retentionSeconds, TimeUnit.SECONDS).named("publishedAt_ttl"));
+        running = true;
+        watcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        watcher.interrupt();
+    }
+
+    @Override
+    public String getOrigin() {
+        return origin;
+    }
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        mongoOperations.getCollection(COLLECTION).insertOne(new Document("origin", invalidation.getOrigin())
+                .append("cache", invalidation.getCacheName())
+                .append("key", invalidation.getKey())
+                .append("publishedAt", Date.from(invalidation.getPublishedAt())));
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidation> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    private void watch() {
+        while (running) {
+            try (MongoCursor<ChangeStreamDocument<Document>> cursor = openChangeStream()) {
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null) {
+                        deliver(change.getFullDocument());
+                        resumeToken = change.getResumeToken();
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                if (isResumePointLost(e)) {
+                    //only now start from scratch, what was missed ages out with the cache ttl
+                    LOGGER.warn("Cache invalidation stream can't resume where it stopped, starting from now", e);
+                    resumeToken = null;
+                } else {
+                    LOGGER.warn("Cache invalidation stream interrupted, resuming", e);
+                }
+                pause();
+            }
+        }
+    }
+
+    /**
+     * The server no longer has the point to resume from: InvalidResumeToken, ChangeStreamFatalError (how 3.6 reports
+     * a token that fell off the oplog) or ChangeStreamHistoryLost.
+     */
+    private static boolean isResumePointLost(RuntimeException e) {
+        return e instanceof MongoServerException && RESUME_POINT_LOST.contains(((MongoServerException) e).getCode());
+    }
+
+    private MongoCursor<ChangeStreamDocument<Document>> openChangeStream() {
+        return resumeToken == null
+                ? watchInserts().iterator()
+                : watchInserts().resumeAfter(resumeToken).iterator();
+    }
+
+    private ChangeStreamIterable<Document> watchInserts() {
+        return mongoOperations.getCollection(COLLECTION)
+                .watch(Collections.singletonList(Aggregates.match(Filters.eq("operationType", "insert"))))
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+    }
+
+    private void deliver(Document document) {
+        if (document == null) {
+            return;
+        }
+        CacheInvalidation invalidation = new CacheInvalidation(document.getString("origin"), document.getString("cache"),
+                document.getString("key"), document.getDate("publishedAt").toInstant());
+        subscribers.forEach(subscriber -> {
+            try {
+                subscriber.accept(invalidation);
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not apply cache invalidation of " + invalidation.getCacheName(), e);
+            }
+        });
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(retryDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package be.sbs.timekeeper.application.configuration.rollup;
+
+import be.sbs.timekeeper.application.service.RollupService;
+import be.sbs.timekeeper.application.valueobjects.RollupRebuildReport;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+@Component
+@Endpoint(id = "rollups")
+public class RollupEndpoint {
+
+    private final RollupService rollupService;
+
+    public RollupEndpoint(RollupService rollupService) {
+        this.rollupService = rollupService;
+    }
+
+    @WriteOperation
+    public RollupRebuildReport rebuild() {
+        return rollupService.rebuild();
+    }
+}
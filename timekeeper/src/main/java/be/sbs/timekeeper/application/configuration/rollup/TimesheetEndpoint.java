@@ -0,0 +1,25 @@
+package be.sbs.timekeeper.application.configuration.rollup;
+
+import be.sbs.timekeeper.application.service.TimesheetService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+
+@Component
+@Endpoint(id = "timesheets")
+public class TimesheetEndpoint {
+
+    private final TimesheetService timesheetService;
+
+    public TimesheetEndpoint(TimesheetService timesheetService) {
+        this.timesheetService = timesheetService;
+    }
+
+    @WriteOperation
+    public Map<String, Long> rebuild() {
+        return Collections.singletonMap("sessions", timesheetService.rebuild());
+    }
+}
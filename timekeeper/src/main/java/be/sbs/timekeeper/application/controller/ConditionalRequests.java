@@ -0,0 +1,34 @@
+package be.sbs.timekeeper.application.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Conditional GETs on version counters: the response gets a strong ETag, and when the client already has it
+ * the status is set to 304 so the handler can return before loading or serializing anything.
+ * The handlers must not carry @ResponseStatus, it would overwrite the 304.
+ */
+final class ConditionalRequests {
+    //let clients store the response but make them revalidate it, instead of the no-store default
+    private static final String REVALIDATE = CacheControl.noCache().cachePrivate().getHeaderValue();
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * @return true when the client's copy is current and the handler should return null
+     */
+    static boolean notModified(ServletWebRequest request, String tag, Long version) {
+        if (version == null) {
+            return false;
+        }
+        HttpServletResponse response = request.getResponse();
+        if (response != null && response.getHeader(HttpHeaders.CACHE_CONTROL) == null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, REVALIDATE);
+        }
+        return request.checkNotModified(tag + "-" + version);
+    }
+}
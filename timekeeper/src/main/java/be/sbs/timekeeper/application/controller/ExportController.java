@@ -0,0 +1,53 @@
+package be.sbs.timekeeper.application.controller;
+
+import be.sbs.timekeeper.application.beans.Project;
+import be.sbs.timekeeper.application.beans.Session;
+import be.sbs.timekeeper.application.beans.Task;
+import be.sbs.timekeeper.application.service.ExportService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletResponse;
+
+@RestController
+@CrossOrigin
+@RequestMapping
+public class ExportController {
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private final ExportService exportService;
+
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    //---- GET ------------------------------------------------------------------------------------
+    @GetMapping(path = "/sessions/_export", produces = NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public StreamingResponseBody exportSessions(@RequestParam(defaultValue = "false") boolean gzip, HttpServletResponse response) {
+        return export(Session.class, "sessions", gzip, response);
+    }
+
+    @GetMapping(path = "/tasks/_export", produces = NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public StreamingResponseBody exportTasks(@RequestParam(defaultValue = "false") boolean gzip, HttpServletResponse response) {
+        return export(Task.class, "tasks", gzip, response);
+    }
+
+    @GetMapping(path = "/projects/_export", produces = NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public StreamingResponseBody exportProjects(@RequestParam(defaultValue = "false") boolean gzip, HttpServletResponse response) {
+        return export(Project.class, "projects", gzip, response);
+    }
+
+    private StreamingResponseBody export(Class<?> type, String name, boolean gzip, HttpServletResponse response) {
+        String fileName = gzip ? name + ".ndjson.gz" : name + ".ndjson";
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return outputStream -> exportService.export(type, outputStream, gzip);
+    }
+}
@@ -4,18 +4,23 @@ package be.sbs.timekeeper.application.controller;
 import be.sbs.timekeeper.application.beans.Project;
 import be.sbs.timekeeper.application.enums.ProjectStatus;
 import be.sbs.timekeeper.application.service.ProjectService;
-import be.sbs.timekeeper.application.valueobjects.PatchOperation;
+import be.sbs.timekeeper.application.valueobjects.BulkPatch;
+import be.sbs.timekeeper.application.valueobjects.BulkPatchResult;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import be.sbs.timekeeper.application.valueobjects.PatchDocument;
 import be.sbs.timekeeper.application.valueobjects.ProjectStatusListResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.Arrays;
-import java.util.List;
 
 @RestController
-@CrossOrigin
+@CrossOrigin(exposedHeaders = HttpHeaders.ETAG)
 @RequestMapping
 public class ProjectController {
 
@@ -28,8 +33,9 @@ public class ProjectController {
 
     //---- GET ------------------------------------------------------------------------------------
     @GetMapping(path = "/project/{projectId}")
-    public Project getProjectById(@PathVariable String projectId){
-        return projectService.getById(projectId);
+    public Project getProjectById(@PathVariable String projectId, ServletWebRequest request){
+        Project project = projectService.getById(projectId);
+        return ConditionalRequests.notModified(request, "project", project.getVersion()) ? null : project;
     }
 
     @GetMapping(path = "/project/_statuses")
@@ -38,9 +44,12 @@ public class ProjectController {
     }
 
     @GetMapping(path = "/projects", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    @ResponseStatus(HttpStatus.OK)
-    public List<Project> getAll(){
-        return projectService.getAll();
+    public MappingJacksonValue getAll(@RequestParam(required = false) String fields, ServletWebRequest request){
+        FieldSelection selection = FieldSelection.parse(fields, Project.class);
+        if (ConditionalRequests.notModified(request, "projects", projectService.getCollectionVersion())) {
+            return null;
+        }
+        return selection.applyTo(projectService.getAll(selection));
     }
 
     //---- POST -----------------------------------------------------------------------------------
@@ -60,9 +69,15 @@ public class ProjectController {
     //---- PATCH ----------------------------------------------------------------------------------
     @PatchMapping(path = "/project/{projectId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void applyPatch(@PathVariable String projectId, @RequestBody PatchOperation patchOperations) {
+    public void applyPatch(@PathVariable String projectId, @RequestBody PatchDocument patchOperations) {
         projectService.applyPatch(projectId, patchOperations);
     }
+
+    @PatchMapping(path = "/projects/_bulk", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public BulkPatchResult applyBulkPatch(@RequestBody BulkPatch bulkPatch) {
+        return projectService.applyBulkPatch(bulkPatch);
+    }
     
     //---- DELETE ----------------------------------------------------------------------------------
     @DeleteMapping(path = "/project/{projectId}")
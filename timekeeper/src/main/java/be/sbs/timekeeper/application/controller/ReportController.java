@@ -0,0 +1,40 @@
+package be.sbs.timekeeper.application.controller;
+
+import be.sbs.timekeeper.application.enums.ReportGrouping;
+import be.sbs.timekeeper.application.exception.BadRequestException;
+import be.sbs.timekeeper.application.service.ReportService;
+import be.sbs.timekeeper.application.valueobjects.WorkTimeReportRow;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@CrossOrigin
+@RequestMapping
+public class ReportController {
+    private final ReportService reportService;
+
+    public ReportController(ReportService reportService) {
+        this.reportService = reportService;
+    }
+
+    //---- GET ------------------------------------------------------------------------------------
+    @GetMapping(path = "/reports/work-time", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public List<WorkTimeReportRow> getWorkTime(@RequestParam String groupBy,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime from,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime to) {
+        ReportGrouping grouping;
+        try {
+            grouping = ReportGrouping.fromString(groupBy);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("groupBy must be one of task, project, user or day");
+        }
+        return reportService.getWorkTime(grouping, from, to);
+    }
+}
@@ -1,12 +1,21 @@
 package be.sbs.timekeeper.application.controller;
 
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import be.sbs.timekeeper.application.beans.Project;
 import be.sbs.timekeeper.application.beans.SearchResult;
+import be.sbs.timekeeper.application.beans.Task;
+import be.sbs.timekeeper.application.enums.SuggestionType;
+import be.sbs.timekeeper.application.exception.BadRequestException;
 import be.sbs.timekeeper.application.service.SearchService;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import be.sbs.timekeeper.application.valueobjects.Suggestion;
+
+import java.util.List;
 
 import org.springframework.http.HttpStatus;
 
@@ -20,7 +29,28 @@ public class SearchController {
 	
 	@GetMapping(path = "/search", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
 	@ResponseStatus(HttpStatus.OK)
-	public SearchResult search(@RequestParam String keyword){
-		return searchService.getSearchResult(keyword);
+	public MappingJacksonValue search(@RequestParam String keyword,
+			@RequestParam(required = false) Integer page,
+			@RequestParam(required = false) Integer size,
+			@RequestParam(required = false) String fields){
+		FieldSelection selection = FieldSelection.parse(fields, Task.class, Project.class);
+		SearchResult result = searchService.getSearchResult(keyword, page, size, selection);
+		return selection.applyTo(result);
+	}
+
+	@GetMapping(path = "/search/_autocomplete", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+	@ResponseStatus(HttpStatus.OK)
+	public List<Suggestion> autocomplete(@RequestParam String prefix,
+			@RequestParam(required = false) String type,
+			@RequestParam(required = false) Integer limit){
+		return searchService.getSuggestions(prefix, parseType(type), limit);
+	}
+
+	private static SuggestionType parseType(String type) {
+		try {
+			return type == null || type.trim().isEmpty() ? null : SuggestionType.fromString(type);
+		} catch (IllegalArgumentException e) {
+			throw new BadRequestException("Unknown type: " + type);
+		}
 	}
 }
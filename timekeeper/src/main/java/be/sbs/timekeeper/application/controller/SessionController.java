@@ -7,62 +7,75 @@ import be.sbs.timekeeper.application.exception.BadRequestException;
 import be.sbs.timekeeper.application.service.SessionService;
 import be.sbs.timekeeper.application.service.TaskService;
 import be.sbs.timekeeper.application.service.UserService;
-import be.sbs.timekeeper.application.valueobjects.PatchOperation;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import be.sbs.timekeeper.application.valueobjects.PatchDocument;
+import be.sbs.timekeeper.application.valueobjects.SessionPage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
-import java.util.List;
+import javax.servlet.http.HttpServletResponse;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
 
 @RestController
-@CrossOrigin
+@CrossOrigin(exposedHeaders = {SessionController.NEXT_CURSOR_HEADER, HttpHeaders.ETAG})
 @RequestMapping
 public class SessionController {
+	public static final String NEXT_CURSOR_HEADER = "Next-Cursor";
+
 	private final SessionService sessionService;
 	private final TaskService taskService;
 	private final UserService userService;
+	private final String closedSessionCacheControl;
 
-	public SessionController(SessionService sessionService, TaskService taskService, UserService userService) {
+	public SessionController(SessionService sessionService, TaskService taskService, UserService userService,
+			@Value("${timekeeper.http.closed-session-max-age-seconds:3600}") long closedSessionMaxAgeSeconds) {
 		this.sessionService = sessionService;
 		this.taskService = taskService;
 		this.userService = userService;
+		this.closedSessionCacheControl = CacheControl.maxAge(closedSessionMaxAgeSeconds, TimeUnit.SECONDS).cachePrivate().getHeaderValue();
 	}
 
     //---- GET ------------------------------------------------------------------------------------
     @GetMapping(path = "/sessions", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
 	@ResponseStatus(HttpStatus.OK)
-	public List<Session> getAllSessions(@RequestParam(required = false) String taskId, 
-			@RequestParam(required = false) String userId){
+	public MappingJacksonValue getAllSessions(@RequestParam(required = false) String taskId, 
+			@RequestParam(required = false) String userId,
+			@RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime from,
+			@RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) LocalDateTime to,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(required = false) Integer limit,
+			@RequestParam(required = false) String fields,
+			HttpServletResponse response){
+    	FieldSelection selection = FieldSelection.parse(fields, Session.class);
     	
-    	if(taskId == null && userId == null) {
-    		//no request parameters: get everything
-    		return sessionService.getAll();
-    	}else {
-    		if(taskId != null) {
-    			//check if task exists, if not the following statement throws an exception and execution is interrupted
-    	    	Task task = taskService.getById(taskId);
-    	    	
-    	    	if(userId != null) {
-    	    		User user = userService.getById(userId);
-    	    		return sessionService.getAllSessionsFromTaskAndUser(task, user);
-    	    	}else {
-    	    		return sessionService.getAllSessionsFromTask(task);
-    	    	}
-    		}
-    		
-    		//if we reach this code, then taskId wasn't passed, only userId was passed
-    			
-    		//check if user exists, if not the following statement will throw an exception
-    		User user = userService.getById(userId);
-    		return sessionService.getAllSessionsFromUser(user);
+    	//check if task and user exist, if not the following statements throw an exception and execution is interrupted
+    	Task task = taskId == null ? null : taskService.getById(taskId);
+    	User user = userId == null ? null : userService.getById(userId);
+
+    	SessionPage page = sessionService.getSessions(task, user, from, to, cursor, limit, selection);
+    	if (page.getNext() != null) {
+    		response.setHeader(NEXT_CURSOR_HEADER, page.getNext().encode());
     	}
+    	return selection.applyTo(page.getSessions());
 	}
 
     @GetMapping(path = "/session/{sessionId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-	@ResponseStatus(HttpStatus.OK)
-	public Session getById(@PathVariable String sessionId) {
-		return sessionService.getById(sessionId);
+	public Session getById(@PathVariable String sessionId, ServletWebRequest request, HttpServletResponse response) {
+		Session session = sessionService.getById(sessionId);
+		//closed sessions rarely change anymore, browsers can keep them for a while without asking
+		if (session.getEndTime() != null) {
+			response.setHeader(HttpHeaders.CACHE_CONTROL, closedSessionCacheControl);
+		}
+		return ConditionalRequests.notModified(request, "session", session.getVersion()) ? null : session;
 	}
     
     @GetMapping(path = "/_active-session", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
@@ -105,7 +118,7 @@ public class SessionController {
     //---- PATCH ----------------------------------------------------------------------------------
     @PatchMapping(path = "/session/{sessionId}")
 	@ResponseStatus(HttpStatus.NO_CONTENT)
-    public void applyPatch(@PathVariable String sessionId, @RequestBody PatchOperation patchOperations) {
+    public void applyPatch(@PathVariable String sessionId, @RequestBody PatchDocument patchOperations) {
         sessionService.applyPatch(sessionId, patchOperations);
     }
 
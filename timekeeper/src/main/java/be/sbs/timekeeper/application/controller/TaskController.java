@@ -7,18 +7,23 @@ import be.sbs.timekeeper.application.enums.TaskStatus;
 import be.sbs.timekeeper.application.exception.BadRequestException;
 import be.sbs.timekeeper.application.service.ProjectService;
 import be.sbs.timekeeper.application.service.TaskService;
-import be.sbs.timekeeper.application.valueobjects.PatchOperation;
+import be.sbs.timekeeper.application.valueobjects.BulkPatch;
+import be.sbs.timekeeper.application.valueobjects.BulkPatchResult;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import be.sbs.timekeeper.application.valueobjects.PatchDocument;
 import be.sbs.timekeeper.application.valueobjects.PrioritiesListResponse;
 import be.sbs.timekeeper.application.valueobjects.TaskStatusListResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.Arrays;
-import java.util.List;
 
 @RestController
-@CrossOrigin
+@CrossOrigin(exposedHeaders = HttpHeaders.ETAG)
 @RequestMapping
 public class TaskController {
 	
@@ -34,25 +39,29 @@ public class TaskController {
     //---- GET ------------------------------------------------------------------------------------
     @GetMapping(path = "/tasks", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
 	@ResponseStatus(HttpStatus.OK)
-	public List<Task> getAll(){
-		List<Task> all = taskService.getAll();
-		return all;
+	public MappingJacksonValue getAll(@RequestParam(required = false) String fields){
+		FieldSelection selection = FieldSelection.parse(fields, Task.class);
+		return selection.applyTo(taskService.getAll(selection));
 	}
 
     @GetMapping(path = "/tasks/{projectId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-	@ResponseStatus(HttpStatus.OK)
-	public List<Task> getAllTaskFromProject(@PathVariable String projectId, @RequestHeader(value = "token") String token){
+	public MappingJacksonValue getAllTaskFromProject(@PathVariable String projectId, @RequestHeader(value = "token") String token,
+			@RequestParam(required = false) String fields, ServletWebRequest request){
+		FieldSelection selection = FieldSelection.parse(fields, Task.class);
 		//check if project exists
 		Project project = projectService.getById(projectId);
+		if (ConditionalRequests.notModified(request, "tasks", taskService.getCollectionVersion())) {
+			return null;
+		}
 
 		//if project exists get all the tasks from the project
-		return taskService.getAllTasksFromProject(project);
+		return selection.applyTo(taskService.getAllTasksFromProject(project, selection));
 	}
 
     @GetMapping(path = "/task/{taskId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-	@ResponseStatus(HttpStatus.OK)
-	public Task getById(@PathVariable String taskId) {
-		return taskService.getById(taskId);
+	public Task getById(@PathVariable String taskId, ServletWebRequest request) {
+		Task task = taskService.getById(taskId);
+		return ConditionalRequests.notModified(request, "task", task.getVersion()) ? null : task;
 	}
 
     @GetMapping(path = "/task/_statuses")
@@ -79,10 +88,16 @@ public class TaskController {
     //---- PATCH ----------------------------------------------------------------------------------
     @PatchMapping(path = "/task/{taskId}")
 	@ResponseStatus(HttpStatus.NO_CONTENT)
-    public void applyPatch(@PathVariable String taskId, @RequestBody PatchOperation patchOperations) {
+    public void applyPatch(@PathVariable String taskId, @RequestBody PatchDocument patchOperations) {
         taskService.applyPatch(taskId, patchOperations);
     }
 
+    @PatchMapping(path = "/tasks/_bulk", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+	@ResponseStatus(HttpStatus.OK)
+    public BulkPatchResult applyBulkPatch(@RequestBody BulkPatch bulkPatch) {
+        return taskService.applyBulkPatch(bulkPatch);
+    }
+
     //---- PUT ------------------------------------------------------------------------------------
     @PutMapping(path = "/task")
     @ResponseStatus(HttpStatus.ACCEPTED)
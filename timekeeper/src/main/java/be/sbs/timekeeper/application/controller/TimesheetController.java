@@ -0,0 +1,44 @@
+package be.sbs.timekeeper.application.controller;
+
+import be.sbs.timekeeper.application.enums.TimesheetPeriod;
+import be.sbs.timekeeper.application.exception.BadRequestException;
+import be.sbs.timekeeper.application.service.TimesheetService;
+import be.sbs.timekeeper.application.service.UserService;
+import be.sbs.timekeeper.application.valueobjects.Timesheet;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@CrossOrigin
+@RequestMapping
+public class TimesheetController {
+    private final TimesheetService timesheetService;
+    private final UserService userService;
+
+    public TimesheetController(TimesheetService timesheetService, UserService userService) {
+        this.timesheetService = timesheetService;
+        this.userService = userService;
+    }
+
+    //---- GET ------------------------------------------------------------------------------------
+    @GetMapping(path = "/timesheet/{userId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Timesheet getTimesheet(@PathVariable String userId,
+                                  @RequestParam(defaultValue = "week") String period,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate date) {
+        TimesheetPeriod timesheetPeriod;
+        try {
+            timesheetPeriod = TimesheetPeriod.fromString(period);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("period must be week or month");
+        }
+        //check if user exists, if not the following statement throws an exception
+        userService.getById(userId);
+        return timesheetService.getTimesheet(userId, timesheetPeriod, date == null ? LocalDate.now() : date);
+    }
+}
@@ -0,0 +1,23 @@
+package be.sbs.timekeeper.application.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import org.apache.commons.lang3.StringUtils;
+
+public enum ReportGrouping {
+    TASK, PROJECT, USER, DAY;
+
+
+    @JsonCreator
+    public static ReportGrouping fromString(String source) {
+        return source == null
+                ? null
+                : ReportGrouping.valueOf(source.toUpperCase().trim().replace(" ", "_"));
+    }
+
+    @JsonValue
+    public String getKey() {
+        return StringUtils.capitalize(this.name().toLowerCase().replace("_", " "));
+    }
+
+}
@@ -0,0 +1,126 @@
+package be.sbs.timekeeper.application.repository;
+
+import be.sbs.timekeeper.application.beans.Versioned;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertEvent;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Version counters of the {@link Versioned} documents and of their collections as a whole.
+ * A collection's version changes on every insert, save, update or delete in it, so a list endpoint can tell
+ * whether its result changed without reading the documents.
+ * Inserts, saves and deletes are counted here through the mapping events; the custom updates,
+ * which don't raise those events, call {@link #bump} and increment the document version themselves.
+ * <p>
+ * The counter is a separate write after the one to the document: Mongo can't change both in one operation.
+ * It is only made when the write changed something and is retried a few times. When it still fails, the collection
+ * is remembered as pending and the failure is thrown, so the request fails and the client refetches; reading the
+ * version of a pending collection bumps it first, this instance never answers 304 with the counter from before the
+ * change. Only an instance stopping between the two writes leaves the list ETag behind until the next change.
+ * Document ETags don't have that gap, the document version is part of the document write.
+ */
+@Component
+public class CollectionVersions extends AbstractMongoEventListener<Object> {
+    static final String COLLECTION = "collectionVersions";
+    static final String VERSION = "version";
+    private static final int ATTEMPTS = 3;
+    private static final Logger LOGGER = LoggerFactory.getLogger(CollectionVersions.class);
+    private static final Set<String> PENDING_BUMPS = ConcurrentHashMap.newKeySet();
+
+    private final MongoOperations mongoOperations;
+
+    public CollectionVersions(MongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    public long current(Class<?> type) {
+        String collectionName = mongoOperations.getCollectionName(type);
+        if (PENDING_BUMPS.contains(collectionName)) {
+            //a change was written without its counter, a version from before it would validate stale lists
+            bump(mongoOperations, collectionName);
+        }
+        Document counter = mongoOperations.findById(collectionName, Document.class, COLLECTION);
+        return counter == null ? 0 : ((Number) counter.get(VERSION)).longValue();
+    }
+
+    @Override
+    public void onBeforeConvert(BeforeConvertEvent<Object> event) {
+        if (event.getSource() instanceof Versioned) {
+            Versioned document = (Versioned) event.getSource();
+            document.setVersion(document.getVersion() == null ? 1 : document.getVersion() + 1);
+        }
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Object> event) {
+        if (event.getSource() instanceof Versioned) {
+            bump(mongoOperations, event.getCollectionName());
+        }
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Object> event) {
+        if (event.getType() != null && Versioned.class.isAssignableFrom(event.getType())) {
+            bump(mongoOperations, event.getCollectionName());
+        }
+    }
+
+    static void bump(MongoOperations mongoOperations, Class<?> type) {
+        bump(mongoOperations, mongoOperations.getCollectionName(type));
+    }
+
+    /**
+     * Bumps the collection version when the update matched a document, an update that found nothing changes no list.
+     */
+    static UpdateResult bumpIfMatched(MongoOperations mongoOperations, Class<?> type, UpdateResult updateResult) {
+        if (updateResult.getMatchedCount() > 0) {
+            bump(mongoOperations, type);
+        }
+        return updateResult;
+    }
+
+    /**
+     * Adds the document version increment to an update of a {@link Versioned} document.
+     */
+    static Update versioned(Update update) {
+        return update.inc(VERSION, 1);
+    }
+
+    /**
+     * @throws RuntimeException the failure of the last attempt, the collection stays pending until a bump succeeds
+     */
+    private static void bump(MongoOperations mongoOperations, String collectionName) {
+        Query query = Query.query(Criteria.where("_id").is(collectionName));
+        Update increment = new Update().inc(VERSION, 1);
+        RuntimeException failure = null;
+        for (int attempt = 1; attempt <= ATTEMPTS; attempt++) {
+            try {
+                mongoOperations.upsert(query, increment, COLLECTION);
+                PENDING_BUMPS.remove(collectionName);
+                return;
+            } catch (DuplicateKeyException e) {
+                //two instances created the counter at the same time, it exists now
+                failure = e;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Attempt " + attempt + " to bump the version of " + collectionName + " failed", e);
+                failure = e;
+            }
+        }
+        PENDING_BUMPS.add(collectionName);
+        throw failure;
+    }
+}
@@ -0,0 +1,48 @@
+package be.sbs.timekeeper.application.repository;
+
+import be.sbs.timekeeper.application.valueobjects.FieldConverter;
+import be.sbs.timekeeper.application.valueobjects.PatchOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Validated patch operations as one update, shared by the task, project and session repositories,
+ * so a patch is written in a single atomic round trip. Operations on the same path are applied in order, the last one wins.
+ */
+final class PatchUpdates {
+    private PatchUpdates() {
+    }
+
+    static Update of(List<PatchOperation> operations) {
+        Update update = CollectionVersions.versioned(new Update());
+        for (PatchOperation operation : operations) {
+            update.set(operation.getPath().substring(1), FieldConverter.typedValue(operation));
+        }
+        return update;
+    }
+
+    /**
+     * Matches only the documents the operations change, so a document that already has every patched value
+     * is neither rewritten nor given a new version.
+     */
+    static Criteria changes(List<PatchOperation> operations) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        operations.forEach(operation -> values.put(operation.getPath().substring(1), FieldConverter.typedValue(operation)));
+        return new Criteria().orOperator(values.entrySet().stream()
+                .map(value -> Criteria.where(value.getKey()).ne(value.getValue()))
+                .toArray(Criteria[]::new));
+    }
+
+    static boolean touches(List<PatchOperation> operations, String path) {
+        return operations.stream().anyMatch(operation -> path.equals(operation.getPath()));
+    }
+
+    static String describe(List<PatchOperation> operations) {
+        return operations.stream().map(PatchOperation::getPath).collect(Collectors.joining(", "));
+    }
+}
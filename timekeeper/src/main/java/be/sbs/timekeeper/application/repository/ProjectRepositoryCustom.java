@@ -1,15 +1,30 @@
 package be.sbs.timekeeper.application.repository;
 
 import be.sbs.timekeeper.application.beans.Project;
+import be.sbs.timekeeper.application.enums.ProjectStatus;
+import be.sbs.timekeeper.application.valueobjects.BulkPatchResult;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
 import be.sbs.timekeeper.application.valueobjects.PatchOperation;
+import be.sbs.timekeeper.application.valueobjects.WorkTimeRollup;
 import com.mongodb.MongoException;
 import com.mongodb.client.result.UpdateResult;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
 @Component
 public class ProjectRepositoryCustom {
 
@@ -19,13 +34,126 @@ public class ProjectRepositoryCustom {
         this.mongoOperations = mongoOperations;
     }
 
-    public void saveOperation(String projectId, PatchOperation operation) {
+    public List<Project> findProjects(FieldSelection selection) {
+        return mongoOperations.find(Projections.select(new Query(), selection), Project.class);
+    }
+
+    /**
+     * One page of the projects matching the keyword's words in their name or description, best matches first.
+     * Without keyword, one page of every project.
+     */
+    public List<Project> findByKeyword(String keyword, Pageable pageable, FieldSelection selection) {
+        Query query = keyword == null || keyword.trim().isEmpty()
+                ? new Query().with(Sort.by(Direction.ASC, "id"))
+                : TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(keyword)).sortByScore();
+        query.with(pageable);
+        return mongoOperations.find(Projections.select(query, selection), Project.class);
+    }
+
+    /**
+     * Every project with only its name, read from a cursor instead of loaded at once.
+     */
+    public CloseableIterator<Project> streamProjectNames() {
+        return mongoOperations.stream(nameOnly(new Query()), Project.class);
+    }
+
+    /**
+     * The project with only its name, empty when it doesn't exist.
+     */
+    public Optional<Project> findProjectName(String projectId) {
+        return Optional.ofNullable(mongoOperations.findOne(nameOnly(Query.query(Criteria.where("id").is(projectId))), Project.class));
+    }
+
+    private static Query nameOnly(Query query) {
+        query.fields().include("name");
+        return query;
+    }
+
+    /**
+     * Replaces what clients own of the project, keeping its rollups and task count, and increments its version in the same update.
+     *
+     * @return false when the project doesn't exist
+     */
+    public boolean replace(Project project) {
+        Update update = ReplaceUpdates.of(mongoOperations.getConverter(), project, "workTimeSeconds", "sessionCount", "lastActivity", "numberOfTasks");
+        return CollectionVersions.bumpIfMatched(mongoOperations, Project.class,
+                mongoOperations.updateFirst(Query.query(Criteria.where("id").is(project.getId())), update, Project.class)).getMatchedCount() > 0;
+    }
+
+    /**
+     * Applies every operation of the patch in one update.
+     *
+     * @return false when the project doesn't exist
+     */
+    public boolean saveOperations(String projectId, List<PatchOperation> operations) {
         Query query = Query.query(Criteria.where("id").is(projectId));
-        Update update = new Update().set(operation.getPath().substring(1), operation.getValue());
-        UpdateResult updateResult = mongoOperations.updateFirst(query, update, Project.class);
+        UpdateResult updateResult = mongoOperations.updateFirst(query, PatchUpdates.of(operations), Project.class);
+        if (!updateResult.wasAcknowledged()) {
+            throw new MongoException("Could not patch " + PatchUpdates.describe(operations) + " of project " + projectId);
+        }
+        if (updateResult.getMatchedCount() == 0) {
+            return false;
+        }
+        CollectionVersions.bump(mongoOperations, Project.class);
+        return true;
+    }
+
+    /**
+     * Applies the operations to every project with one of the ids (when given) and with one of the statuses (when given),
+     * in one update. Only the projects the operations change are updated; the matched count comes from a count of the filter.
+     */
+    public BulkPatchResult saveOperations(List<String> ids, Collection<ProjectStatus> statuses, List<PatchOperation> operations) {
+        //counted first, a status patch can take the patched projects out of the filter
+        long matched = mongoOperations.count(bulkFilter(ids, statuses), Project.class);
+        Query changing = bulkFilter(ids, statuses).addCriteria(PatchUpdates.changes(operations));
+        UpdateResult updateResult = mongoOperations.updateMulti(changing, PatchUpdates.of(operations), Project.class);
         if (!updateResult.wasAcknowledged()) {
-            throw new MongoException("Could not add operation " + operation + " to project " + projectId);
+            throw new MongoException("Could not patch " + PatchUpdates.describe(operations) + " of projects");
+        }
+        if (updateResult.getModifiedCount() > 0) {
+            CollectionVersions.bump(mongoOperations, Project.class);
+        }
+        return new BulkPatchResult(Math.max(matched, updateResult.getModifiedCount()), updateResult.getModifiedCount());
+    }
+
+    private static Query bulkFilter(List<String> ids, Collection<ProjectStatus> statuses) {
+        Query query = new Query();
+        if (ids != null && !ids.isEmpty()) {
+            query.addCriteria(Criteria.where("id").in(ids));
         }
+        if (statuses != null) {
+            query.addCriteria(Criteria.where("status").in(statuses.stream().map(ProjectStatus::name).collect(Collectors.toList())));
+        }
+        return query;
+    }
+
+    public void incrementRollup(String projectId, WorkTimeRollup delta) {
+        CollectionVersions.bumpIfMatched(mongoOperations, Project.class,
+                mongoOperations.updateFirst(Query.query(Criteria.where("id").is(projectId)), RollupUpdates.increment(delta), Project.class));
+    }
+
+    public void setRollup(String projectId, WorkTimeRollup rollup) {
+        CollectionVersions.bumpIfMatched(mongoOperations, Project.class,
+                mongoOperations.updateFirst(Query.query(Criteria.where("id").is(projectId)), RollupUpdates.set(rollup), Project.class));
+    }
+
+    public void incrementTaskCount(String projectId, int delta) {
+        CollectionVersions.bumpIfMatched(mongoOperations, Project.class,
+                mongoOperations.updateFirst(Query.query(Criteria.where("id").is(projectId)), CollectionVersions.versioned(new Update().inc("numberOfTasks", delta)), Project.class));
+    }
+
+    public void setTaskCount(String projectId, int numberOfTasks) {
+        CollectionVersions.bumpIfMatched(mongoOperations, Project.class,
+                mongoOperations.updateFirst(Query.query(Criteria.where("id").is(projectId)), CollectionVersions.versioned(new Update().set("numberOfTasks", numberOfTasks)), Project.class));
     }
 
+    /**
+     * Projects ordered by id with only their rollup fields, starting after the given id.
+     */
+    public List<Project> findRollupBatch(String afterId, int size) {
+        Query query = afterId == null ? new Query() : Query.query(Criteria.where("id").gt(afterId));
+        query.with(Sort.by(Direction.ASC, "id")).limit(size);
+        query.fields().include("workTimeSeconds").include("sessionCount").include("lastActivity").include("numberOfTasks");
+        return mongoOperations.find(query, Project.class);
+    }
 }
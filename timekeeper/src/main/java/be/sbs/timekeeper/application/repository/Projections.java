@@ -0,0 +1,25 @@
+package be.sbs.timekeeper.application.repository;
+
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * Turns a client's field selection into a projection, shared by the task, project and session repositories.
+ */
+final class Projections {
+    private Projections() {
+    }
+
+    /**
+     * @param required fields the repository itself needs, read even when the client didn't ask for them
+     */
+    static Query select(Query query, FieldSelection selection, String... required) {
+        if (!selection.isAll()) {
+            selection.getFields().forEach(field -> query.fields().include(field));
+            for (String field : required) {
+                query.fields().include(field);
+            }
+        }
+        return query;
+    }
+}
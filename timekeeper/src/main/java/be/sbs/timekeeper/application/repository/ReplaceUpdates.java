@@ -0,0 +1,46 @@
+package be.sbs.timekeeper.application.repository;
+
+import org.bson.Document;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A PUT of a {@link be.sbs.timekeeper.application.beans.Versioned} document as one update, shared by the task,
+ * project and session repositories. The fields clients own are set, or unset when left empty, and the version is
+ * incremented in the same write; the fields the server maintains are left as they are. So a rollup or patch that lands
+ * between the read and the write of a PUT is neither overwritten nor ends up with the same version as the PUT.
+ */
+final class ReplaceUpdates {
+    private ReplaceUpdates() {
+    }
+
+    static Update of(MongoConverter converter, Object document, String... maintainedFields) {
+        Document written = new Document();
+        converter.write(document, written);
+
+        Set<String> kept = new HashSet<>(Arrays.asList(maintainedFields));
+        kept.add("_id");
+        kept.add(CollectionVersions.VERSION);
+
+        Update update = CollectionVersions.versioned(new Update());
+        converter.getMappingContext().getRequiredPersistentEntity(document.getClass())
+                .doWithProperties((PropertyHandler<MongoPersistentProperty>) property -> {
+                    String field = property.getFieldName();
+                    if (kept.contains(field)) {
+                        return;
+                    }
+                    if (written.containsKey(field)) {
+                        update.set(field, written.get(field));
+                    } else {
+                        update.unset(field);
+                    }
+                });
+        return update;
+    }
+}
@@ -0,0 +1,39 @@
+package be.sbs.timekeeper.application.repository;
+
+import be.sbs.timekeeper.application.valueobjects.WorkTimeRollup;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Updates on the rollup fields, shared by the task and project repositories.
+ */
+final class RollupUpdates {
+    private RollupUpdates() {
+    }
+
+    static Update increment(WorkTimeRollup delta) {
+        Update update = CollectionVersions.versioned(new Update())
+                .inc("workTimeSeconds", delta.getWorkTimeSeconds())
+                .inc("sessionCount", delta.getSessionCount());
+        if (delta.getLastActivity() != null) {
+            update.max("lastActivity", delta.getLastActivity());
+        }
+        return update;
+    }
+
+    static Update set(WorkTimeRollup rollup) {
+        return CollectionVersions.versioned(new Update())
+                .set("workTimeSeconds", rollup.getWorkTimeSeconds())
+                .set("sessionCount", rollup.getSessionCount())
+                .set("lastActivity", rollup.getLastActivity());
+    }
+
+    /**
+     * Reads a rollup from an aggregation row with workTimeSeconds, sessionCount and lastActivity fields.
+     */
+    static WorkTimeRollup fromRow(Document row) {
+        return new WorkTimeRollup(((Number) row.get("workTimeSeconds")).longValue(),
+                ((Number) row.get("sessionCount")).longValue(),
+                TemporalExpressions.toLocalDateTime(row.get("lastActivity")));
+    }
+}
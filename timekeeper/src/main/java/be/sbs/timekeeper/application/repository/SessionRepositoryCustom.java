@@ -1,24 +1,67 @@
 package be.sbs.timekeeper.application.repository;
 
 import be.sbs.timekeeper.application.beans.Session;
+import be.sbs.timekeeper.application.configuration.converter.TemporalMigration;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
 import be.sbs.timekeeper.application.valueobjects.PatchOperation;
-import com.mongodb.MongoException;
-import com.mongodb.client.result.UpdateResult;
+import be.sbs.timekeeper.application.valueobjects.SessionCursor;
+import be.sbs.timekeeper.application.valueobjects.WorkTimeReportRow;
+import be.sbs.timekeeper.application.valueobjects.WorkTimeRollup;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 @Component
 public class SessionRepositoryCustom {
+    private static final String MIGRATIONS = "migrations";
+    private static final String FLAG_LEGACY_RUNNING_SESSIONS = "flagLegacyRunningSessions";
+    private static final String START_DATE = "startDate";
+
     private MongoOperations mongoOperations;
+    private TemporalMigration temporalMigration;
 
-    public SessionRepositoryCustom(MongoOperations mongoOperations) {
+    public SessionRepositoryCustom(MongoOperations mongoOperations, TemporalMigration temporalMigration) {
         this.mongoOperations = mongoOperations;
+        this.temporalMigration = temporalMigration;
+    }
+
+    /**
+     * The unique "one running session per user" index only contains sessions flagged as running.
+     * Running sessions stored before the flag existed are flagged here, before the indexes are created.
+     * The flagging scans the sessions, so it runs once per database: the migrations collection records that it did.
+     */
+    @PostConstruct
+    public void flagLegacyRunningSessions() {
+        Query applied = Query.query(Criteria.where("_id").is(FLAG_LEGACY_RUNNING_SESSIONS));
+        if (mongoOperations.exists(applied, MIGRATIONS)) {
+            return;
+        }
+        Query legacyRunningSessions = Query.query(Criteria.where("endTime").is(null).and("running").exists(false));
+        mongoOperations.updateMulti(legacyRunningSessions, new Update().set("running", true), Session.class);
+        mongoOperations.upsert(applied, new Update().set("appliedAt", new Date()), MIGRATIONS);
     }
 
     public List<Session> findSessionsByTaskId(String taskId) {
@@ -46,19 +89,207 @@ public class SessionRepositoryCustom {
 		return mongoOperations.find(query,  Session.class);
 	}
     
+    /**
+     * One page of sessions ordered by (startTime, id), optionally filtered on task, user and a startTime range.
+     * Pages continue from the cursor instead of skipping, so every page is an index range scan.
+     * The startTime conditions match both temporal formats, so sessions that aren't migrated yet aren't left out.
+     *
+     * @param from  inclusive lower bound on startTime, may be null
+     * @param to    exclusive upper bound on startTime, may be null
+     * @param after last session of the previous page, null for the first page
+     * @param limit maximum number of sessions to return
+     * @param selection fields to read, the startTime is always read for the cursor
+     */
+    public List<Session> findSessionsPage(String taskId, String userId, LocalDateTime from, LocalDateTime to,
+                                          SessionCursor after, int limit, FieldSelection selection) {
+        Criteria criteria = ownedBy(taskId, userId);
+        if (from != null || to != null || after != null) {
+            //one branch per format, each still repeats the task and user so it has an index of its own
+            List<Criteria> branches = new ArrayList<>();
+            for (Function<LocalDateTime, Object> format : TemporalExpressions.DATE_TIME_FORMATS) {
+                Criteria range = ownedBy(taskId, userId);
+                Criteria startTime = range.and("startTime");
+                if (from != null) startTime.gte(format.apply(from));
+                if (to != null) startTime.lt(format.apply(to));
+                if (after != null) startTime.gt(format.apply(after.getStartTime()));
+                branches.add(range);
+                if (after != null) {
+                    branches.add(ownedBy(taskId, userId).and("startTime").is(format.apply(after.getStartTime())).and("id").gt(after.getId()));
+                }
+            }
+            criteria = new Criteria().orOperator(branches.toArray(new Criteria[0]));
+        }
+
+        if (temporalMigration.isMixed(Session.class, "startTime")) {
+            return findSessionsPageInStartTimeOrder(criteria, limit, selection);
+        }
+        Query query = Query.query(criteria)
+                .with(Sort.by(Direction.ASC, "startTime", "id"))
+                .limit(limit);
+        return mongoOperations.find(Projections.select(query, selection, "startTime"), Session.class);
+    }
+
+    private static Criteria ownedBy(String taskId, String userId) {
+        Criteria criteria = new Criteria();
+        if (taskId != null) criteria.and("taskId").is(taskId);
+        if (userId != null) criteria.and("userId").is(userId);
+        return criteria;
+    }
+
+    /**
+     * While the startTime of some sessions is a string and of others a date, the database sorts every string
+     * before every date. The page is then sorted on startTime read as a date, which can't use an index
+     * and only happens until the temporal migration is done.
+     */
+    private List<Session> findSessionsPageInStartTimeOrder(Criteria criteria, int limit, FieldSelection selection) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        operations.add(Aggregation.match(criteria));
+        if (!selection.isAll()) {
+            Document fields = new Document("startTime", 1);
+            selection.getFields().stream().filter(field -> !"id".equals(field)).forEach(field -> fields.append(field, 1));
+            operations.add(context -> new Document("$project", fields));
+        }
+        operations.add(context -> new Document("$addFields", new Document(START_DATE, TemporalExpressions.toDate("$startTime"))));
+        operations.add(context -> new Document("$sort", new Document(START_DATE, 1).append("_id", 1)));
+        operations.add(Aggregation.limit(limit));
+
+        TypedAggregation<Session> aggregation = Aggregation.newAggregation(Session.class, operations)
+                .withOptions(Aggregation.newAggregationOptions().allowDiskUse(true).build());
+        return mongoOperations.aggregate(aggregation, Session.class).getMappedResults();
+    }
+
+    public List<WorkTimeReportRow> aggregateWorkTimePerTask(LocalDateTime from, LocalDateTime to) {
+        return aggregateWorkTime("$taskId", from, to);
+    }
+
+    public List<WorkTimeReportRow> aggregateWorkTimePerUser(LocalDateTime from, LocalDateTime to) {
+        return aggregateWorkTime("$userId", from, to);
+    }
+
+    public List<WorkTimeReportRow> aggregateWorkTimePerDay(LocalDateTime from, LocalDateTime to) {
+        return aggregateWorkTime(TemporalExpressions.toDay("$startTime"), from, to);
+    }
+
+    /**
+     * Sums the duration of finished sessions that started in [from, to) per group key, inside the database.
+     * The duration is taken from startTime and endTime because workTime can be patched to any format.
+     * The range matches both temporal formats, so sessions that aren't migrated yet are counted too.
+     */
+    private List<WorkTimeReportRow> aggregateWorkTime(Object groupKey, LocalDateTime from, LocalDateTime to) {
+        Document match = new Document("endTime", new Document("$ne", null));
+        if (from != null || to != null) {
+            List<Document> ranges = new ArrayList<>();
+            for (Function<LocalDateTime, Object> format : TemporalExpressions.DATE_TIME_FORMATS) {
+                Document startTime = new Document();
+                if (from != null) startTime.append("$gte", format.apply(from));
+                if (to != null) startTime.append("$lt", format.apply(to));
+                ranges.add(new Document("startTime", startTime));
+            }
+            match.append("$or", ranges);
+        }
+        List<Document> pipeline = Arrays.asList(
+                new Document("$match", match),
+                new Document("$group", new Document("_id", groupKey)
+                        .append("totalMillis", new Document("$sum", durationMillis()))
+                        .append("sessionCount", new Document("$sum", 1))),
+                new Document("$sort", new Document("_id", 1)));
+
+        List<WorkTimeReportRow> rows = new ArrayList<>();
+        for (Document row : mongoOperations.getCollection(mongoOperations.getCollectionName(Session.class))
+                .aggregate(pipeline).allowDiskUse(true)) {
+            rows.add(new WorkTimeReportRow(row.getString("_id"),
+                    ((Number) row.get("totalMillis")).longValue() / 1000,
+                    ((Number) row.get("sessionCount")).longValue()));
+        }
+        return rows;
+    }
+
+    /**
+     * Recomputes the rollup of the given tasks from their finished sessions.
+     * Tasks without finished sessions are left out of the result.
+     */
+    public Map<String, WorkTimeRollup> aggregateRollupsPerTask(Collection<String> taskIds) {
+        List<Document> pipeline = Arrays.asList(
+                new Document("$match", new Document("taskId", new Document("$in", new ArrayList<>(taskIds)))
+                        .append("endTime", new Document("$ne", null))),
+                //whole seconds per session, as WorkTimeRollup.of adds them, so a rebuild matches the incremental totals
+                new Document("$group", new Document("_id", "$taskId")
+                        .append("workTimeSeconds", new Document("$sum",
+                                new Document("$floor", new Document("$divide", Arrays.asList(durationMillis(), 1000)))))
+                        .append("sessionCount", new Document("$sum", 1))
+                        .append("lastActivity", new Document("$max", "$endTime"))));
+
+        Map<String, WorkTimeRollup> rollups = new HashMap<>();
+        for (Document row : mongoOperations.getCollection(mongoOperations.getCollectionName(Session.class)).aggregate(pipeline)) {
+            rollups.put(row.getString("_id"), RollupUpdates.fromRow(row));
+        }
+        return rollups;
+    }
+
+    /**
+     * Duration of a finished session in milliseconds, from its stored startTime and endTime.
+     */
+    private static Document durationMillis() {
+        return new Document("$subtract", Arrays.asList(TemporalExpressions.toDate("$endTime"), TemporalExpressions.toDate("$startTime")));
+    }
+
+    /**
+     * Every session with an endTime, read from a cursor instead of loaded at once.
+     */
+    public CloseableIterator<Session> streamFinishedSessions() {
+        return mongoOperations.stream(Query.query(Criteria.where("endTime").ne(null)), Session.class);
+    }
+
+    public List<Session> findActiveSessions() {
+    	Query query = new Query();
+    	query.addCriteria(Criteria.where("running").is(true));
+    	return mongoOperations.find(query, Session.class);
+    }
+
     public Optional<Session> findActiveSessionByUserId(String userId) {
     	Query query = new Query();
     	query.addCriteria(Criteria.where("userId").is(userId).and("endTime").is(null));
     	return Optional.ofNullable(mongoOperations.findOne(query, Session.class));
     }
     
-    public void saveOperation(String sessionId, PatchOperation operation) {
+    /**
+     * Close a running session in one atomic round trip.
+     *
+     * @return the stopped session, empty when the session doesn't exist or was already stopped
+     */
+    public Optional<Session> stopRunningSession(String sessionId, LocalDateTime endTime, Duration workTime) {
+        Query query = Query.query(Criteria.where("id").is(sessionId).and("endTime").is(null));
+        Update update = CollectionVersions.versioned(new Update().set("endTime", endTime).set("workTime", workTime).unset("running"));
+        Optional<Session> stopped = Optional.ofNullable(mongoOperations.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Session.class));
+        stopped.ifPresent(session -> CollectionVersions.bump(mongoOperations, Session.class));
+        return stopped;
+    }
+
+    /**
+     * Replaces the session and increments its version in the same update.
+     *
+     * @return false when the session doesn't exist
+     */
+    public boolean replace(Session session) {
+        Update update = ReplaceUpdates.of(mongoOperations.getConverter(), session);
+        return CollectionVersions.bumpIfMatched(mongoOperations, Session.class,
+                mongoOperations.updateFirst(Query.query(Criteria.where("id").is(session.getId())), update, Session.class)).getMatchedCount() > 0;
+    }
+
+    /**
+     * Applies every operation of the patch in one update.
+     *
+     * @return the patched session, empty when it doesn't exist
+     */
+    public Optional<Session> saveOperations(String sessionId, List<PatchOperation> operations) {
         Query query = Query.query(Criteria.where("id").is(sessionId));
-        Update update = new Update().set(operation.getPath().substring(1), operation.getValue());
-        UpdateResult updateResult = mongoOperations.updateFirst(query, update, Session.class);
-        if (!updateResult.wasAcknowledged()) {
-            throw new MongoException("Could not add operation " + operation + " to session " + sessionId);
+        Update update = PatchUpdates.of(operations);
+        if (PatchUpdates.touches(operations, "/endTime")) {
+            update.unset("running");
         }
+        Optional<Session> patched = Optional.ofNullable(mongoOperations.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Session.class));
+        patched.ifPresent(session -> CollectionVersions.bump(mongoOperations, Session.class));
+        return patched;
     }
     
     public void deleteSessionsFromTaskId(String taskId) {
@@ -2,16 +2,33 @@ package be.sbs.timekeeper.application.repository;
 
 import be.sbs.timekeeper.application.beans.Task;
 import be.sbs.timekeeper.application.enums.TaskStatus;
+import be.sbs.timekeeper.application.valueobjects.BulkPatchResult;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
 import be.sbs.timekeeper.application.valueobjects.PatchOperation;
+import be.sbs.timekeeper.application.valueobjects.WorkTimeRollup;
 import com.mongodb.MongoException;
 import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Component
 public class TaskRepositoryCustom {
@@ -21,33 +38,197 @@ public class TaskRepositoryCustom {
         this.mongoOperations = mongoOperations;
     }
 
-    public List<Task> findTasksByProjectId(String projectId) {
+    public List<Task> findTasks(FieldSelection selection) {
+        return mongoOperations.find(Projections.select(new Query(), selection), Task.class);
+    }
+
+    public List<Task> findTasksByProjectId(String projectId, FieldSelection selection) {
         Query query = new Query();
         query.addCriteria(Criteria.where("projectId").is(projectId));
+        return mongoOperations.find(Projections.select(query, selection), Task.class);
+    }
+
+    /**
+     * One page of the tasks matching the keyword's words in their name or description, best matches first.
+     * Without keyword, one page of every task.
+     */
+    public List<Task> findByKeyword(String keyword, Pageable pageable, FieldSelection selection) {
+        Query query = keyword == null || keyword.trim().isEmpty()
+                ? new Query().with(Sort.by(Direction.ASC, "id"))
+                : TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(keyword)).sortByScore();
+        query.with(pageable);
+        return mongoOperations.find(Projections.select(query, selection), Task.class);
+    }
+
+    /**
+     * Every task with only its name and projectId, read from a cursor instead of loaded at once.
+     */
+    public CloseableIterator<Task> streamTaskNames() {
+        return mongoOperations.stream(nameOnly(new Query()), Task.class);
+    }
+
+    /**
+     * The task with only its name and projectId, empty when it doesn't exist.
+     */
+    public Optional<Task> findTaskName(String taskId) {
+        return Optional.ofNullable(mongoOperations.findOne(nameOnly(Query.query(Criteria.where("id").is(taskId))), Task.class));
+    }
+
+    private static Query nameOnly(Query query) {
+        query.fields().include("name").include("projectId");
+        return query;
+    }
+
+    /**
+     * @return the projectId of every given task that exists, keyed by taskId
+     */
+    public Map<String, String> findProjectIdsByTaskIds(Collection<String> taskIds) {
+        Query query = Query.query(Criteria.where("id").in(taskIds));
+        query.fields().include("projectId");
+        return mongoOperations.find(query, Task.class).stream()
+                .filter(task -> task.getProjectId() != null)
+                .collect(Collectors.toMap(Task::getId, Task::getProjectId));
+    }
+
+    /**
+     * Adds the delta to the rollup of the task.
+     *
+     * @return the projectId of the task, empty when the task doesn't exist
+     */
+    public Optional<String> incrementRollup(String taskId, WorkTimeRollup delta) {
+        Query query = Query.query(Criteria.where("id").is(taskId));
+        query.fields().include("projectId");
+        Optional<String> projectId = Optional.ofNullable(mongoOperations.findAndModify(query, RollupUpdates.increment(delta), Task.class))
+                .map(Task::getProjectId);
+        if (projectId.isPresent()) {
+            CollectionVersions.bump(mongoOperations, Task.class);
+        }
+        return projectId;
+    }
+
+    public void setRollup(String taskId, WorkTimeRollup rollup) {
+        CollectionVersions.bumpIfMatched(mongoOperations, Task.class,
+                mongoOperations.updateFirst(Query.query(Criteria.where("id").is(taskId)), RollupUpdates.set(rollup), Task.class));
+    }
+
+    /**
+     * Tasks ordered by id with only their rollup fields, starting after the given id.
+     */
+    public List<Task> findRollupBatch(String afterId, int size) {
+        Query query = afterId == null ? new Query() : Query.query(Criteria.where("id").gt(afterId));
+        query.with(Sort.by(Direction.ASC, "id")).limit(size);
+        query.fields().include("workTimeSeconds").include("sessionCount").include("lastActivity");
         return mongoOperations.find(query, Task.class);
     }
 
-    public void saveOperation(String taskId, PatchOperation operation) {
+    /**
+     * Sums the task rollups per project, for the given projects.
+     */
+    public Map<String, WorkTimeRollup> aggregateRollupsPerProject(Collection<String> projectIds) {
+        List<Document> pipeline = Arrays.asList(
+                new Document("$match", new Document("projectId", new Document("$in", new ArrayList<>(projectIds)))),
+                new Document("$group", new Document("_id", "$projectId")
+                        .append("workTimeSeconds", new Document("$sum", "$workTimeSeconds"))
+                        .append("sessionCount", new Document("$sum", "$sessionCount"))
+                        .append("lastActivity", new Document("$max", "$lastActivity"))));
+
+        Map<String, WorkTimeRollup> rollups = new HashMap<>();
+        for (Document row : mongoOperations.getCollection(mongoOperations.getCollectionName(Task.class)).aggregate(pipeline)) {
+            rollups.put(row.getString("_id"), RollupUpdates.fromRow(row));
+        }
+        return rollups;
+    }
+
+    /**
+     * Number of tasks per project, for the given projects. Projects without tasks are left out.
+     */
+    public Map<String, Integer> countTasksPerProject(Collection<String> projectIds) {
+        List<Document> pipeline = Arrays.asList(
+                new Document("$match", new Document("projectId", new Document("$in", new ArrayList<>(projectIds)))),
+                new Document("$group", new Document("_id", "$projectId").append("count", new Document("$sum", 1))));
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (Document row : mongoOperations.getCollection(mongoOperations.getCollectionName(Task.class)).aggregate(pipeline)) {
+            counts.put(row.getString("_id"), ((Number) row.get("count")).intValue());
+        }
+        return counts;
+    }
+
+    /**
+     * Replaces what clients own of the task, keeping its rollups, and increments its version in the same update.
+     *
+     * @return false when the task doesn't exist
+     */
+    public boolean replace(Task task) {
+        Update update = ReplaceUpdates.of(mongoOperations.getConverter(), task, "workTimeSeconds", "sessionCount", "lastActivity");
+        return CollectionVersions.bumpIfMatched(mongoOperations, Task.class,
+                mongoOperations.updateFirst(Query.query(Criteria.where("id").is(task.getId())), update, Task.class)).getMatchedCount() > 0;
+    }
+
+    /**
+     * Applies every operation of the patch in one update.
+     *
+     * @return false when the task doesn't exist
+     */
+    public boolean saveOperations(String taskId, List<PatchOperation> operations) {
         Query query = Query.query(Criteria.where("id").is(taskId));
-        Update update = new Update().set(operation.getPath().substring(1), operation.getValue());
-        UpdateResult updateResult = mongoOperations.updateFirst(query, update, Task.class);
+        UpdateResult updateResult = mongoOperations.updateFirst(query, PatchUpdates.of(operations), Task.class);
         if (!updateResult.wasAcknowledged()) {
-            throw new MongoException("Could not add operation " + operation + " to task " + taskId);
+            throw new MongoException("Could not patch " + PatchUpdates.describe(operations) + " of task " + taskId);
+        }
+        if (updateResult.getMatchedCount() == 0) {
+            return false;
+        }
+        CollectionVersions.bump(mongoOperations, Task.class);
+        return true;
+    }
+    
+    /**
+     * Applies the operations to every task with one of the ids (when given), of the project (when given)
+     * and with one of the statuses (when given), in one update.
+     * Only the tasks the operations change are updated; the matched count comes from a count of the filter.
+     */
+    public BulkPatchResult saveOperations(List<String> ids, String projectId, Collection<TaskStatus> statuses, List<PatchOperation> operations) {
+        //counted first, a status patch can take the patched tasks out of the filter
+        long matched = mongoOperations.count(bulkFilter(ids, projectId, statuses), Task.class);
+        Query changing = bulkFilter(ids, projectId, statuses).addCriteria(PatchUpdates.changes(operations));
+        UpdateResult updateResult = mongoOperations.updateMulti(changing, PatchUpdates.of(operations), Task.class);
+        if (!updateResult.wasAcknowledged()) {
+            throw new MongoException("Could not patch " + PatchUpdates.describe(operations) + " of tasks");
+        }
+        if (updateResult.getModifiedCount() > 0) {
+            CollectionVersions.bump(mongoOperations, Task.class);
+        }
+        return new BulkPatchResult(Math.max(matched, updateResult.getModifiedCount()), updateResult.getModifiedCount());
+    }
+
+    private static Query bulkFilter(List<String> ids, String projectId, Collection<TaskStatus> statuses) {
+        Query query = new Query();
+        if (ids != null && !ids.isEmpty()) {
+            query.addCriteria(Criteria.where("id").in(ids));
+        }
+        if (projectId != null) {
+            query.addCriteria(Criteria.where("projectId").is(projectId));
+        }
+        if (statuses != null) {
+            query.addCriteria(Criteria.where("status").in(statuses.stream().map(TaskStatus::name).collect(Collectors.toList())));
         }
+        return query;
     }
     
-    public void deleteTasksFromProject(String projectId) {
+    public long deleteTasksFromProject(String projectId) {
     	Query query = new Query();
     	query.addCriteria(Criteria.where("projectId").is(projectId));
-    	mongoOperations.findAllAndRemove(query, Task.class);
+    	return mongoOperations.remove(query, Task.class).getDeletedCount();
     }
 
 	public void updateTaskStatus(String taskId, TaskStatus taskStatus) {
 		Query query = Query.query(Criteria.where("id").is(taskId));
-		Update update = new Update().set("status", taskStatus.name());
+		Update update = CollectionVersions.versioned(new Update().set("status", taskStatus.name()));
 		UpdateResult updateResult = mongoOperations.updateFirst(query, update, Task.class);
 		if (!updateResult.wasAcknowledged()) {
 			throw new MongoException("Could not update task status to " + taskStatus.name() + " in task " + taskId);
 		}
+		CollectionVersions.bumpIfMatched(mongoOperations, Task.class, updateResult);
 	}
 }
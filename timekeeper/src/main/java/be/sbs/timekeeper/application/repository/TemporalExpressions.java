@@ -0,0 +1,82 @@
+package be.sbs.timekeeper.application.repository;
+
+import be.sbs.timekeeper.application.configuration.converter.LocalDateTimeToStringConverter;
+import be.sbs.timekeeper.application.configuration.converter.LocalDateToStringConverter;
+import be.sbs.timekeeper.application.configuration.converter.StringToLocalDateTimeConverter;
+import org.bson.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Aggregation expressions and values for temporal fields that are stored either as formatted strings or as native dates.
+ * Native dates are written from LocalDateTime in the system time zone, so strings are read in that zone as well.
+ */
+final class TemporalExpressions {
+    private static final StringToLocalDateTimeConverter DATE_TIME_CONVERTER = new StringToLocalDateTimeConverter();
+    private static final LocalDateTimeToStringConverter DATE_TIME_STRING = new LocalDateTimeToStringConverter();
+    private static final LocalDateToStringConverter DATE_STRING = new LocalDateToStringConverter();
+
+    /**
+     * A date-time query value as each format stores it, a formatted string and a native date.
+     * While a migration runs a collection holds both, and the database only compares values of the same type,
+     * so a query matches each of them.
+     */
+    static final List<Function<LocalDateTime, Object>> DATE_TIME_FORMATS = Arrays.asList(
+            DATE_TIME_STRING::convert,
+            value -> Date.from(value.atZone(ZoneId.systemDefault()).toInstant()));
+
+    /**
+     * A date query value as each format stores it, see {@link #DATE_TIME_FORMATS}.
+     */
+    static final List<Function<LocalDate, Object>> DATE_FORMATS = Arrays.asList(
+            DATE_STRING::convert,
+            value -> Date.from(value.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+
+    private TemporalExpressions() {
+    }
+
+    /**
+     * @param field a field reference like "$startTime"
+     * @return the field as a date, whatever format it is stored in
+     */
+    static Document toDate(String field) {
+        return new Document("$cond", Arrays.asList(
+                isString(field),
+                new Document("$dateFromString", new Document("dateString", field).append("timezone", zone())),
+                field));
+    }
+
+    /**
+     * @return the yyyy-MM-dd day of a date-time field, whatever format it is stored in
+     */
+    static Document toDay(String field) {
+        return new Document("$cond", Arrays.asList(
+                isString(field),
+                new Document("$substrBytes", Arrays.asList(field, 0, 10)),
+                new Document("$dateToString", new Document("format", "%Y-%m-%d").append("date", field).append("timezone", zone()))));
+    }
+
+    /**
+     * Reads a date-time value returned by an aggregation.
+     */
+    static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Date) {
+            return LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault());
+        }
+        return value == null ? null : DATE_TIME_CONVERTER.convert((String) value);
+    }
+
+    private static Document isString(String field) {
+        return new Document("$eq", Arrays.asList(new Document("$type", field), "string"));
+    }
+
+    private static String zone() {
+        return ZoneId.systemDefault().getId();
+    }
+}
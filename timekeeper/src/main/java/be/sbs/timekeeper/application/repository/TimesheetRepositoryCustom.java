@@ -0,0 +1,71 @@
+package be.sbs.timekeeper.application.repository;
+
+import be.sbs.timekeeper.application.beans.TimesheetDay;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+@Component
+public class TimesheetRepositoryCustom {
+    private MongoOperations mongoOperations;
+
+    public TimesheetRepositoryCustom(MongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    /**
+     * Adds seconds to the task totals of a user's days in one round trip, creating the days that don't exist yet.
+     *
+     * @param deltas seconds to add per day and per taskId, negative to take time away
+     */
+    public void increment(String userId, Map<LocalDate, Map<String, Long>> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoOperations.bulkOps(BulkMode.UNORDERED, TimesheetDay.class);
+        deltas.forEach((day, perTask) -> {
+            Update update = new Update()
+                    .setOnInsert("userId", userId)
+                    .setOnInsert("day", day);
+            long total = 0;
+            for (Map.Entry<String, Long> task : perTask.entrySet()) {
+                update.inc("taskSeconds." + task.getKey(), task.getValue());
+                total += task.getValue();
+            }
+            update.inc("totalSeconds", total);
+            bulk.upsert(Query.query(Criteria.where("id").is(TimesheetDay.idOf(userId, day))), update);
+        });
+        bulk.execute();
+    }
+
+    /**
+     * The range matches both temporal formats, so days that aren't migrated yet are found too.
+     * The database would sort every string day before every date day, so the days are sorted here.
+     *
+     * @return the stored days of the user in [from, to], in chronological order
+     */
+    public List<TimesheetDay> findDays(String userId, LocalDate from, LocalDate to) {
+        List<Criteria> ranges = new ArrayList<>();
+        for (Function<LocalDate, Object> format : TemporalExpressions.DATE_FORMATS) {
+            ranges.add(Criteria.where("userId").is(userId).and("day").gte(format.apply(from)).lte(format.apply(to)));
+        }
+        List<TimesheetDay> days = mongoOperations.find(Query.query(new Criteria().orOperator(ranges.toArray(new Criteria[0]))), TimesheetDay.class);
+        days.sort(Comparator.comparing(TimesheetDay::getDay));
+        return days;
+    }
+
+    public void deleteAll() {
+        mongoOperations.remove(new Query(), TimesheetDay.class);
+    }
+}
@@ -0,0 +1,32 @@
+package be.sbs.timekeeper.application.repository;
+
+import be.sbs.timekeeper.application.beans.User;
+import com.mongodb.MongoException;
+import com.mongodb.client.result.UpdateResult;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserRepositoryCustom {
+    private MongoOperations mongoOperations;
+
+    public UserRepositoryCustom(MongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    /**
+     * Replace the password hash only if it wasn't changed in the meantime
+     * (e.g. by a password reset that ran concurrently).
+     */
+    public void replacePasswordHash(String userId, String expectedHash, String newHash) {
+        Query query = Query.query(Criteria.where("id").is(userId).and("password").is(expectedHash));
+        Update update = new Update().set("password", newHash);
+        UpdateResult updateResult = mongoOperations.updateFirst(query, update, User.class);
+        if (!updateResult.wasAcknowledged()) {
+            throw new MongoException("Could not replace password hash of user " + userId);
+        }
+    }
+}
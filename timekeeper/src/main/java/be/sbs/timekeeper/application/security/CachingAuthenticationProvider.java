@@ -0,0 +1,93 @@
+package be.sbs.timekeeper.application.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers successful HTTP Basic verifications so the BCrypt check only runs once per credential pair and TTL.
+ * Credentials are never stored: entries are keyed by an HMAC of "name:password" under a key that only lives in this process.
+ * Failed attempts are not cached and always reach the delegate.
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final AuthenticationProvider delegate;
+    private final boolean enabled;
+    private final Cache<String, Authentication> verifiedCredentials;
+    private final SecretKeySpec digestKey;
+    private final Counter bcryptVerifications;
+
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, MeterRegistry meterRegistry,
+                                         boolean enabled, long maximumSize, long ttlSeconds) {
+        this.delegate = delegate;
+        this.enabled = enabled;
+        this.verifiedCredentials = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.digestKey = new SecretKeySpec(randomKey(), ALGORITHM);
+        this.bcryptVerifications = Counter.builder("timekeeper.bcrypt.verifications")
+                .description("Password hash verifications")
+                .tag("source", "basic-auth")
+                .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedCredentials, "basic-auth");
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (!enabled || authentication.getCredentials() == null) {
+            bcryptVerifications.increment();
+            return delegate.authenticate(authentication);
+        }
+
+        String key = digest(authentication.getName() + ":" + authentication.getCredentials());
+        Authentication verified = verifiedCredentials.getIfPresent(key);
+        if (verified != null) {
+            return verified;
+        }
+
+        bcryptVerifications.increment();
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.isAuthenticated()) {
+            verifiedCredentials.put(key, result);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+
+    private String digest(String credentials) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(digestKey);
+            return Base64.getEncoder().encodeToString(mac.doFinal(credentials.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not digest credentials", e);
+        }
+    }
+
+    private static byte[] randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+}
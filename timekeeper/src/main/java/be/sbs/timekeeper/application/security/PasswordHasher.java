@@ -0,0 +1,149 @@
+package be.sbs.timekeeper.application.security;
+
+import be.sbs.timekeeper.application.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs BCrypt hashing on its own bounded pool so a burst of logins can't occupy the CPU the other endpoints need.
+ * By default the pool uses half of the available processors. When the queue is full, callers are rejected
+ * immediately with a 429 instead of piling up behind each other.
+ */
+@Component
+public class PasswordHasher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PasswordHasher.class);
+
+    private final PasswordEncoder passwordEncoder;
+    private final int strength;
+    private final long timeoutSeconds;
+    private final ThreadPoolExecutor executor;
+    private final Counter verifications;
+    private final Counter encodings;
+    private final Counter rejections;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder, MeterRegistry meterRegistry,
+                          @Value("${timekeeper.password.bcrypt-strength:10}") int strength,
+                          @Value("${timekeeper.password.hashing-threads:0}") int threads,
+                          @Value("${timekeeper.password.hashing-queue-size:32}") int queueSize,
+                          @Value("${timekeeper.password.hashing-timeout-seconds:10}") long timeoutSeconds) {
+        this.passwordEncoder = passwordEncoder;
+        this.strength = strength;
+        this.timeoutSeconds = timeoutSeconds;
+
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.verifications = Counter.builder("timekeeper.bcrypt.verifications")
+                .description("Password hash verifications")
+                .tag("source", "users")
+                .register(meterRegistry);
+        this.encodings = Counter.builder("timekeeper.bcrypt.encodings")
+                .description("Password hashes made, including rehashes")
+                .register(meterRegistry);
+        this.rejections = Counter.builder("timekeeper.password.hashing.rejected")
+                .description("Password operations rejected because the hashing pool was saturated")
+                .register(meterRegistry);
+        new ExecutorServiceMetrics(executor, "password-hashing", Collections.emptyList()).bindTo(meterRegistry);
+    }
+
+    public String encode(String rawPassword) {
+        return run(() -> passwordEncoder.encode(rawPassword), encodings);
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(() -> passwordEncoder.matches(rawPassword, encodedPassword), verifications);
+    }
+
+    /**
+     * @return true when the hash was made with another BCrypt cost than the configured one
+     */
+    public boolean needsRehash(String encodedPassword) {
+        // BCrypt hashes look like $2a$10$..., the cost sits between the second and third '$'
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) != strength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hash the password again with the configured cost without making the caller wait for it.
+     * When the pool is busy the rehash is skipped, it will be retried on the next login.
+     */
+    public void rehashInBackground(String rawPassword, Consumer<String> newHashConsumer) {
+        try {
+            executor.execute(() -> {
+                try {
+                    encodings.increment();
+                    newHashConsumer.accept(passwordEncoder.encode(rawPassword));
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Could not rehash password", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+        }
+    }
+
+    private <T> T run(Callable<T> operation, Counter operations) {
+        Future<T> future;
+        try {
+            future = executor.submit(operation);
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw new TooManyRequestsException("Too many password operations in progress, try again later");
+        }
+        operations.increment();
+
+        try {
+            return future.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new TooManyRequestsException("Password operation timed out, try again later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password operation", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Password operation failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,148 @@
+package be.sbs.timekeeper.application.security;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Issues and verifies self-contained access tokens of the form
+ * {@code v1.<keyId>.<userId>.<issuedAt>.<expiresAt>.<signature>}.
+ * <p>
+ * The signing key rotates every rotation period. Each period key is derived from the master secret,
+ * so every instance sharing {@code timekeeper.token.signing-secret} derives the same key set without
+ * coordination. Signed mode refuses to start without a secret: a generated one would differ per instance
+ * and per restart, logging every user out each time.
+ */
+@Component
+public class SignedTokenService {
+
+    private static final String VERSION = "v1";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final boolean enabled;
+    private final byte[] masterSecret;
+    private final Duration timeToLive;
+    private final Duration rotationPeriod;
+    private final Clock clock;
+    private final Map<Long, SecretKeySpec> keys = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SignedTokenService(@Value("${timekeeper.token.mode:opaque}") String mode,
+                              @Value("${timekeeper.token.signing-secret:}") String signingSecret,
+                              @Value("${timekeeper.token.ttl-minutes:60}") long ttlMinutes,
+                              @Value("${timekeeper.token.key-rotation-minutes:60}") long rotationMinutes) {
+        this(mode, signingSecret, Duration.ofMinutes(ttlMinutes), Duration.ofMinutes(rotationMinutes), Clock.systemUTC());
+    }
+
+    SignedTokenService(String mode, String signingSecret, Duration timeToLive, Duration rotationPeriod, Clock clock) {
+        this.enabled = "signed".equalsIgnoreCase(mode);
+        if (enabled && StringUtils.isBlank(signingSecret)) {
+            throw new IllegalStateException("timekeeper.token.mode=signed needs timekeeper.token.signing-secret");
+        }
+        //when disabled, the random secret only makes sure no signed token verifies
+        this.masterSecret = StringUtils.isBlank(signingSecret) ? randomSecret() : signingSecret.getBytes(StandardCharsets.UTF_8);
+        this.timeToLive = timeToLive;
+        this.rotationPeriod = rotationPeriod;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isSignedToken(String token) {
+        return token != null && token.startsWith(VERSION + ".");
+    }
+
+    public String issue(String userId) {
+        long issuedAt = clock.instant().getEpochSecond();
+        long expiresAt = issuedAt + timeToLive.getSeconds();
+        String payload = String.join(".", VERSION, Long.toString(keyIdAt(issuedAt)), userId,
+                Long.toString(issuedAt), Long.toString(expiresAt));
+        return payload + "." + ENCODER.encodeToString(sign(keyIdAt(issuedAt), payload));
+    }
+
+    /**
+     * @return the user id carried by the token, empty when the signature, key or expiry is not valid
+     */
+    public Optional<String> verify(String token) {
+        if (!isSignedToken(token)) {
+            return Optional.empty();
+        }
+        String[] parts = token.split("\\.");
+        if (parts.length != 6) {
+            return Optional.empty();
+        }
+        try {
+            long keyId = Long.parseLong(parts[1]);
+            long expiresAt = Long.parseLong(parts[4]);
+            long now = clock.instant().getEpochSecond();
+            if (expiresAt <= now || !isActiveKey(keyId, now)) {
+                return Optional.empty();
+            }
+            String payload = token.substring(0, token.lastIndexOf('.'));
+            byte[] signature = Base64.getUrlDecoder().decode(parts[5]);
+            if (!MessageDigest.isEqual(signature, sign(keyId, payload))) {
+                return Optional.empty();
+            }
+            return Optional.of(parts[2]);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private long keyIdAt(long epochSecond) {
+        return epochSecond / rotationPeriod.getSeconds();
+    }
+
+    /**
+     * A key stays valid for verification as long as a token signed with it can still be unexpired.
+     */
+    private boolean isActiveKey(long keyId, long now) {
+        long current = keyIdAt(now);
+        long oldest = keyIdAt(now - timeToLive.getSeconds());
+        keys.keySet().removeIf(id -> id < oldest);
+        return keyId <= current && keyId >= oldest;
+    }
+
+    private byte[] sign(long keyId, String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(keys.computeIfAbsent(keyId, this::deriveKey));
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign token", e);
+        }
+    }
+
+    private SecretKeySpec deriveKey(long keyId) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(masterSecret, ALGORITHM));
+            return new SecretKeySpec(mac.doFinal(("timekeeper-token-key:" + keyId).getBytes(StandardCharsets.UTF_8)), ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not derive token key " + keyId, e);
+        }
+    }
+
+    private static byte[] randomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+}
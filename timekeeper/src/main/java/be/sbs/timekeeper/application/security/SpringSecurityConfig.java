@@ -1,15 +1,22 @@
 package be.sbs.timekeeper.application.security;
 
+import be.sbs.timekeeper.application.controller.SessionController;
 import com.google.common.collect.ImmutableList;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -21,12 +28,33 @@ public class SpringSecurityConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private AuthenticationEntryPoint authenticationEntryPoint;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${timekeeper.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+
+    @Value("${timekeeper.basic-auth-cache.enabled:true}")
+    private boolean basicAuthCacheEnabled;
+
+    @Value("${timekeeper.basic-auth-cache.maximum-size:1000}")
+    private long basicAuthCacheMaximumSize;
+
+    @Value("${timekeeper.basic-auth-cache.ttl-seconds:300}")
+    private long basicAuthCacheTtlSeconds;
+
     @Autowired
     public void configureGlobal(AuthenticationManagerBuilder auth) throws Exception {
-        auth.inMemoryAuthentication()
-                .withUser("SexyBatmanSquad")
-                .password(passwordEncoder().encode("SuckMyDick"))
-                .authorities("ROLE_USER");
+        DaoAuthenticationProvider basicAuthentication = new DaoAuthenticationProvider();
+        basicAuthentication.setPasswordEncoder(passwordEncoder());
+        basicAuthentication.setUserDetailsService(new InMemoryUserDetailsManager(
+                User.withUsername("SexyBatmanSquad")
+                        .password(passwordEncoder().encode("SuckMyDick"))
+                        .authorities("ROLE_USER")
+                        .build()));
+
+        auth.authenticationProvider(new CachingAuthenticationProvider(basicAuthentication, meterRegistry,
+                basicAuthCacheEnabled, basicAuthCacheMaximumSize, basicAuthCacheTtlSeconds));
     }
 
     @Override
@@ -44,7 +72,8 @@ public class SpringSecurityConfig extends WebSecurityConfigurerAdapter {
         configuration.setAllowedMethods(ImmutableList.of("HEAD",
                 "GET", "POST", "PUT", "DELETE", "PATCH"));
         configuration.setAllowCredentials(true);
-        configuration.setAllowedHeaders(ImmutableList.of("Authorization", "Cache-Control", "Content-Type", "Token"));
+        configuration.setAllowedHeaders(ImmutableList.of("Authorization", "Cache-Control", "Content-Type", "Token", HttpHeaders.IF_NONE_MATCH));
+        configuration.setExposedHeaders(ImmutableList.of(SessionController.NEXT_CURSOR_HEADER, HttpHeaders.ETAG));
         final UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
         return source;
@@ -52,6 +81,6 @@ public class SpringSecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
     }
 }
@@ -0,0 +1,108 @@
+package be.sbs.timekeeper.application.security;
+
+import be.sbs.timekeeper.application.beans.User;
+import be.sbs.timekeeper.application.configuration.invalidation.CacheInvalidation;
+import be.sbs.timekeeper.application.configuration.invalidation.InvalidationBus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.commons.lang3.SerializationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Bounded near-cache for the token to user resolution done on every authenticated request.
+ * Only successful lookups are cached, unknown tokens always go to the database.
+ * Hit/miss statistics are published under the cache name "tokens".
+ * Callers get a copy of the cached user, so changing it (before a save that may still fail) doesn't change
+ * what the concurrent requests with the same token read.
+ * <p>
+ * A changed user is announced on the {@link InvalidationBus} by id, never by token, so the tokens don't end up
+ * in the shared invalidations. Every instance then drops all the tokens that resolve to that user,
+ * which takes a pass over the cache.
+ */
+@Component
+public class TokenCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenCache.class);
+    static final String NAME = "tokens";
+
+    private final Cache<String, User> usersByToken;
+    private final InvalidationBus invalidationBus;
+    private final String origin;
+    private final Timer lag;
+
+    @Autowired
+    public TokenCache(MeterRegistry meterRegistry, InvalidationBus invalidationBus,
+                      @Value("${timekeeper.token-cache.maximum-size:10000}") long maximumSize,
+                      @Value("${timekeeper.token-cache.ttl-seconds:300}") long ttlSeconds) {
+        this(meterRegistry, invalidationBus, invalidationBus.getOrigin(), maximumSize, ttlSeconds);
+    }
+
+    TokenCache(MeterRegistry meterRegistry, InvalidationBus invalidationBus, String origin, long maximumSize, long ttlSeconds) {
+        this.usersByToken = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.invalidationBus = invalidationBus;
+        this.origin = origin;
+        this.lag = Timer.builder("timekeeper.cache.invalidation.lag")
+                .description("Time between an eviction on another instance and the eviction here")
+                .tag("cache", NAME)
+                .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, usersByToken, NAME);
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    public Optional<User> get(String token, Function<String, Optional<User>> loader) {
+        if (token == null) {
+            return loader.apply(null);
+        }
+        return Optional.ofNullable(usersByToken.get(token, t -> loader.apply(t).orElse(null)))
+                .map(SerializationUtils::clone);
+    }
+
+    /**
+     * Drops every token of the user, here and on the other instances. Call it after the user is written.
+     */
+    public void invalidate(String userId) {
+        if (userId == null) {
+            return;
+        }
+        evict(userId);
+        try {
+            invalidationBus.publish(new CacheInvalidation(origin, NAME, userId, Instant.now()));
+        } catch (RuntimeException e) {
+            //the write itself succeeded, the other instances catch up when their entries expire
+            LOGGER.error("Could not announce invalidation of " + NAME + " " + userId, e);
+        }
+    }
+
+    private void evict(String userId) {
+        usersByToken.asMap().values().removeIf(user -> userId.equals(user.getId()));
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        if (origin.equals(invalidation.getOrigin()) || !NAME.equals(invalidation.getCacheName())) {
+            return;
+        }
+        if (invalidation.isClear()) {
+            usersByToken.invalidateAll();
+        } else {
+            evict(invalidation.getKey());
+        }
+        lag.record(Duration.between(invalidation.getPublishedAt(), Instant.now()));
+    }
+}
@@ -0,0 +1,100 @@
+package be.sbs.timekeeper.application.service;
+
+import be.sbs.timekeeper.application.beans.Session;
+import be.sbs.timekeeper.application.configuration.invalidation.CacheInvalidation;
+import be.sbs.timekeeper.application.configuration.invalidation.InvalidationBus;
+import be.sbs.timekeeper.application.repository.SessionRepositoryCustom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory view of the running sessions (no endTime yet), keyed by user id.
+ * Loaded once at startup and kept in step by {@link SessionService}, so looking up
+ * the active session of a user doesn't need a database round trip.
+ * Every change is announced on the {@link InvalidationBus}; the other instances drop their entry for that user
+ * and read it from the database again. A missing entry therefore means "unknown here", not "no running session".
+ * Entries are copies, callers can't change the registry by mutating what they get back.
+ */
+@Component
+public class ActiveSessionRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActiveSessionRegistry.class);
+    static final String NAME = "activeSessions";
+
+    private final SessionRepositoryCustom sessionRepositoryCustom;
+    private final InvalidationBus invalidationBus;
+    private final Map<String, Session> activeSessionsByUserId = new ConcurrentHashMap<>();
+
+    public ActiveSessionRegistry(SessionRepositoryCustom sessionRepositoryCustom, InvalidationBus invalidationBus) {
+        this.sessionRepositoryCustom = sessionRepositoryCustom;
+        this.invalidationBus = invalidationBus;
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    @PostConstruct
+    public void load() {
+        activeSessionsByUserId.clear();
+        sessionRepositoryCustom.findActiveSessions().forEach(session -> activeSessionsByUserId.put(session.getUserId(), copy(session)));
+    }
+
+    public Optional<Session> findByUserId(String userId) {
+        return Optional.ofNullable(activeSessionsByUserId.get(userId)).map(this::copy);
+    }
+
+    /**
+     * Register the current state of a session: a running session becomes the active one of its user,
+     * a stopped session is removed if it was the active one.
+     */
+    public void track(Session session) {
+        if (session.getUserId() == null) {
+            return;
+        }
+        if (session.getEndTime() == null) {
+            activeSessionsByUserId.put(session.getUserId(), copy(session));
+            publish(session.getUserId());
+        } else {
+            untrack(session);
+        }
+    }
+
+    public void untrack(Session session) {
+        if (session.getUserId() == null) {
+            return;
+        }
+        activeSessionsByUserId.computeIfPresent(session.getUserId(),
+                (userId, active) -> active.getId().equals(session.getId()) ? null : active);
+        publish(session.getUserId());
+    }
+
+    private void publish(String userId) {
+        try {
+            invalidationBus.publish(new CacheInvalidation(invalidationBus.getOrigin(), NAME, userId, Instant.now()));
+        } catch (RuntimeException e) {
+            //the session write itself succeeded, the other instances still verify against the database when stopping
+            LOGGER.error("Could not announce the active session change of " + userId, e);
+        }
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        if (invalidationBus.getOrigin().equals(invalidation.getOrigin()) || !NAME.equals(invalidation.getCacheName())) {
+            return;
+        }
+        if (invalidation.isClear()) {
+            activeSessionsByUserId.clear();
+        } else {
+            activeSessionsByUserId.remove(invalidation.getKey());
+        }
+    }
+
+    private Session copy(Session session) {
+        return new Session(session.getId(), session.getTaskId(), session.getUserId(),
+                session.getStartTime(), session.getEndTime(), session.getWorkTime());
+    }
+}
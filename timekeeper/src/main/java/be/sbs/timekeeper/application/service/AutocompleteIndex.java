@@ -0,0 +1,209 @@
+package be.sbs.timekeeper.application.service;
+
+import be.sbs.timekeeper.application.beans.Project;
+import be.sbs.timekeeper.application.beans.Task;
+import be.sbs.timekeeper.application.configuration.CacheConfig;
+import be.sbs.timekeeper.application.configuration.invalidation.CacheInvalidation;
+import be.sbs.timekeeper.application.configuration.invalidation.InvalidationBus;
+import be.sbs.timekeeper.application.enums.SuggestionType;
+import be.sbs.timekeeper.application.repository.ProjectRepositoryCustom;
+import be.sbs.timekeeper.application.repository.TaskRepositoryCustom;
+import be.sbs.timekeeper.application.valueobjects.Suggestion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory prefix index over the task and project names, for autocomplete.
+ * Names are normalized (lower case, accents stripped, whitespace collapsed) and indexed from the start of every word,
+ * so "rep" finds "Monthly report". A lookup is a range read on a sorted map and doesn't touch the database.
+ * Loaded once at startup and kept in step by {@link TaskService} and {@link ProjectService};
+ * changes made through the other instances arrive over the {@link InvalidationBus} and are read back by id.
+ */
+@Component
+public class AutocompleteIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AutocompleteIndex.class);
+
+    //sorts below every character of a name, so "report" comes before "report design"
+    private static final char SEPARATOR = '\u0000';
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final TaskRepositoryCustom taskRepositoryCustom;
+    private final ProjectRepositoryCustom projectRepositoryCustom;
+    private final InvalidationBus invalidationBus;
+    private final Map<SuggestionType, NavigableMap<String, Suggestion>> suggestionsByKey = new EnumMap<>(SuggestionType.class);
+    private final Map<SuggestionType, Map<String, Suggestion>> suggestionsById = new EnumMap<>(SuggestionType.class);
+
+    public AutocompleteIndex(TaskRepositoryCustom taskRepositoryCustom, ProjectRepositoryCustom projectRepositoryCustom,
+                             InvalidationBus invalidationBus) {
+        this.taskRepositoryCustom = taskRepositoryCustom;
+        this.projectRepositoryCustom = projectRepositoryCustom;
+        this.invalidationBus = invalidationBus;
+        for (SuggestionType type : SuggestionType.values()) {
+            suggestionsByKey.put(type, new ConcurrentSkipListMap<>());
+            suggestionsById.put(type, new ConcurrentHashMap<>());
+        }
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    @PostConstruct
+    public synchronized void load() {
+        suggestionsByKey.values().forEach(Map::clear);
+        suggestionsById.values().forEach(Map::clear);
+        try (CloseableIterator<Project> projects = projectRepositoryCustom.streamProjectNames()) {
+            projects.forEachRemaining(this::putProject);
+        }
+        try (CloseableIterator<Task> tasks = taskRepositoryCustom.streamTaskNames()) {
+            tasks.forEachRemaining(this::putTask);
+        }
+        LOGGER.info("Autocomplete index loaded with {} projects and {} tasks",
+                suggestionsById.get(SuggestionType.PROJECT).size(), suggestionsById.get(SuggestionType.TASK).size());
+    }
+
+    /**
+     * @param type  only suggest tasks or only projects, null for both
+     * @param limit the maximum number of suggestions
+     * @return the names with a word starting with the prefix, closest match first
+     */
+    public List<Suggestion> complete(String prefix, SuggestionType type, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+        Collection<SuggestionType> types = type == null ? suggestionsByKey.keySet() : Collections.singleton(type);
+        NavigableMap<String, Suggestion> matches = new TreeMap<>();
+        for (SuggestionType candidateType : types) {
+            Set<String> ids = new HashSet<>();
+            for (Map.Entry<String, Suggestion> entry : suggestionsByKey.get(candidateType)
+                    .subMap(normalized, true, normalized + Character.MAX_VALUE, true).entrySet()) {
+                //a name with several words starting with the prefix is suggested once, for its best key
+                if (ids.add(entry.getValue().getId())) {
+                    matches.put(entry.getKey(), entry.getValue());
+                    if (ids.size() == limit) {
+                        break;
+                    }
+                }
+            }
+        }
+        return matches.values().stream().limit(limit).collect(Collectors.toList());
+    }
+
+    public void putTask(Task task) {
+        put(new Suggestion(SuggestionType.TASK, task.getId(), task.getName(), task.getProjectId()));
+    }
+
+    public void putProject(Project project) {
+        put(new Suggestion(SuggestionType.PROJECT, project.getId(), project.getName(), null));
+    }
+
+    /**
+     * Changes the name of an indexed task or project, keeping the rest of its suggestion.
+     */
+    public synchronized void rename(SuggestionType type, String id, String name) {
+        Suggestion existing = suggestionsById.get(type).get(id);
+        if (existing != null) {
+            put(new Suggestion(type, id, name, existing.getProjectId()));
+        }
+    }
+
+    public void removeTask(String taskId) {
+        remove(SuggestionType.TASK, taskId);
+    }
+
+    public void removeProject(String projectId) {
+        remove(SuggestionType.PROJECT, projectId);
+    }
+
+    public synchronized void removeTasksOfProject(String projectId) {
+        List<String> taskIds = suggestionsById.get(SuggestionType.TASK).values().stream()
+                .filter(suggestion -> projectId.equals(suggestion.getProjectId()))
+                .map(Suggestion::getId)
+                .collect(Collectors.toList());
+        taskIds.forEach(this::removeTask);
+    }
+
+    private synchronized void put(Suggestion suggestion) {
+        remove(suggestion.getType(), suggestion.getId());
+        List<String> keys = keys(suggestion);
+        if (keys.isEmpty()) {
+            return;
+        }
+        suggestionsById.get(suggestion.getType()).put(suggestion.getId(), suggestion);
+        NavigableMap<String, Suggestion> index = suggestionsByKey.get(suggestion.getType());
+        keys.forEach(key -> index.put(key, suggestion));
+    }
+
+    private synchronized void remove(SuggestionType type, String id) {
+        Suggestion existing = suggestionsById.get(type).remove(id);
+        if (existing != null) {
+            keys(existing).forEach(suggestionsByKey.get(type)::remove);
+        }
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        //our own writes are in the index already, and a cleared cache is always followed by the evictions that matter
+        if (invalidationBus.getOrigin().equals(invalidation.getOrigin()) || invalidation.isClear()) {
+            return;
+        }
+        if (CacheConfig.TASKS.equals(invalidation.getCacheName())) {
+            Optional<Task> task = taskRepositoryCustom.findTaskName(invalidation.getKey());
+            if (task.isPresent()) {
+                putTask(task.get());
+            } else {
+                removeTask(invalidation.getKey());
+            }
+        } else if (CacheConfig.PROJECTS.equals(invalidation.getCacheName())) {
+            Optional<Project> project = projectRepositoryCustom.findProjectName(invalidation.getKey());
+            if (project.isPresent()) {
+                putProject(project.get());
+            } else {
+                removeProject(invalidation.getKey());
+                removeTasksOfProject(invalidation.getKey());
+            }
+        }
+    }
+
+    /**
+     * One key per word of the name: the name from that word on, followed by the id to keep equal names apart.
+     */
+    private static List<String> keys(Suggestion suggestion) {
+        String name = normalize(suggestion.getName());
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < name.length(); i++) {
+            if (i == 0 || name.charAt(i - 1) == ' ') {
+                keys.add(name.substring(i) + SEPARATOR + suggestion.getId());
+            }
+        }
+        return keys;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String withoutAccents = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return WHITESPACE.matcher(withoutAccents.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,61 @@
+package be.sbs.timekeeper.application.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes whole collections as newline-delimited JSON, one document per line.
+ * Documents are read from a Mongo cursor and written straight to the response, so memory use doesn't depend
+ * on the size of the collection: the cursor only fetches the next batch once the client has taken the previous one.
+ */
+@Service
+public class ExportService {
+
+    private final MongoOperations mongoOperations;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+    private final int flushInterval;
+
+    public ExportService(MongoOperations mongoOperations, ObjectMapper objectMapper,
+                         @Value("${timekeeper.export.flush-interval:500}") int flushInterval) {
+        this.mongoOperations = mongoOperations;
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.flushInterval = flushInterval;
+    }
+
+    public <T> void export(Class<T> type, OutputStream outputStream, boolean gzip) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(outputStream, true) : outputStream;
+        //the servlet container owns the response stream, only the gzip wrapper is ours to finish
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(target)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+
+        try (CloseableIterator<T> documents = mongoOperations.stream(new Query(), type)) {
+            int written = 0;
+            while (documents.hasNext()) {
+                writer.writeValue(generator, documents.next());
+                generator.writeRaw('\n');
+                if (++written % flushInterval == 0) {
+                    generator.flush();
+                }
+            }
+        } finally {
+            generator.flush();
+            if (gzip) {
+                ((GZIPOutputStream) target).finish();
+            }
+        }
+    }
+}
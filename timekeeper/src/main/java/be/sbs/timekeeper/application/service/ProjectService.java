@@ -1,19 +1,33 @@
 package be.sbs.timekeeper.application.service;
 
 import be.sbs.timekeeper.application.beans.Project;
+import be.sbs.timekeeper.application.configuration.CacheConfig;
+import be.sbs.timekeeper.application.enums.ProjectStatus;
+import be.sbs.timekeeper.application.enums.SuggestionType;
 import be.sbs.timekeeper.application.exception.BadRequestException;
 import be.sbs.timekeeper.application.exception.ProjectNotFoundException;
+import be.sbs.timekeeper.application.repository.CollectionVersions;
 import be.sbs.timekeeper.application.repository.ProjectRepository;
 import be.sbs.timekeeper.application.repository.ProjectRepositoryCustom;
+import be.sbs.timekeeper.application.valueobjects.BulkFilter;
+import be.sbs.timekeeper.application.valueobjects.BulkPatch;
+import be.sbs.timekeeper.application.valueobjects.BulkPatchResult;
 import be.sbs.timekeeper.application.valueobjects.FieldConverter;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
 import be.sbs.timekeeper.application.valueobjects.FieldValidator;
 import be.sbs.timekeeper.application.valueobjects.PatchOperation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 import static be.sbs.timekeeper.application.enums.ProjectStatus.DONE;
 
@@ -27,59 +41,139 @@ public class ProjectService {
     private ProjectRepositoryCustom projectRepositoryCustom;
     @Autowired
     private TaskService taskService;
+    @Autowired
+    private CollectionVersions collectionVersions;
+    @Autowired
+    private AutocompleteIndex autocompleteIndex;
+    @Autowired
+    private SearchResultCache searchResultCache;
 
-    @Cacheable("Projects")
+    @Cacheable(CacheConfig.PROJECTS)
     public Project getById(String projectId) {
         return projectRepository.findById(projectId).orElseThrow(() -> new ProjectNotFoundException("Project not found"));
     }
 
-    public List<Project> getAll() {
-        List<Project> projects = projectRepository.findAll();
-        for(Project project: projects) {
-        	project.setNumberOfTasks(taskService.getAllTasksFromProject(project).size());
-        }
-        return projects;
+    public List<Project> getAll(FieldSelection selection) {
+        return projectRepositoryCustom.findProjects(selection);
+    }
+
+    /**
+     * Changes whenever any project changes, the ETag of the project list.
+     */
+    public long getCollectionVersion() {
+        return collectionVersions.current(Project.class);
     }
 
-    public List<Project> getProjectsByKeyword(String keyword) {
-    	return projectRepository.findByNameContainsOrDescriptionContains(keyword,keyword);
+    public List<Project> getProjectsByKeyword(String keyword, Pageable pageable, FieldSelection selection) {
+    	return projectRepositoryCustom.findByKeyword(keyword, pageable, selection);
     }
     
     public void addProject(Project project) {
         FieldValidator.validatePOSTProject(project);
         FieldConverter.setDefaultProjectFields(project);
         projectRepository.insert(project);
+        autocompleteIndex.putProject(project);
+        searchResultCache.onTextChange(null, null, project.getName(), project.getDescription());
     }
 
+    @CacheEvict(cacheNames = CacheConfig.PROJECTS, key = "#project.id")
     public void updateProject(Project project) {
         FieldValidator.validatePUTProject(project);
-        projectRepository.findById(project.getId())
+        Project existingProject = projectRepository.findById(project.getId())
                 .orElseThrow(() -> new ProjectNotFoundException("Cannot update project: " + project.getId() + ". the project doesn't exist!"));
-        projectRepository.save(project);
+        //the rollups are maintained by RollupService, not by clients, the replacement leaves them and the version to the database
+        if (!projectRepositoryCustom.replace(project)) {
+            throw new ProjectNotFoundException("Cannot update project: " + project.getId() + ". the project doesn't exist!");
+        }
+        autocompleteIndex.putProject(project);
+        searchResultCache.onTextChange(existingProject.getName(), existingProject.getDescription(), project.getName(), project.getDescription());
     }
 
-    public void applyPatch(String projectId, PatchOperation patchOperations) {
+    @CacheEvict(cacheNames = CacheConfig.PROJECTS, key = "#projectId")
+    public void adjustTaskCount(String projectId, int delta) {
+        if (delta != 0) {
+            projectRepositoryCustom.incrementTaskCount(projectId, delta);
+        }
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.PROJECTS, key = "#projectId")
+    public void applyPatch(String projectId, List<PatchOperation> patchOperations) {
         Project existingProject = projectRepository.findById(projectId)
                 .orElseThrow(() -> new ProjectNotFoundException("Cannot update project: " + projectId + ". the project doesn't exist!"));
         FieldValidator.validatePATCHProject(patchOperations);
         if (isDoneAndNotValidOperation(patchOperations, existingProject)) {
             throw new BadRequestException("Cannot PATCH these fields for a DONE project!");
         }
-        FieldConverter.convertProjectFields(patchOperations);
-        projectRepositoryCustom.saveOperation(projectId, patchOperations);
+        patchOperations.forEach(FieldConverter::convertProjectFields);
+        if (!projectRepositoryCustom.saveOperations(projectId, patchOperations)) {
+            throw new ProjectNotFoundException("Cannot update project: " + projectId + ". the project doesn't exist!");
+        }
+
+        String name = patchedValue(patchOperations, "/name", existingProject.getName());
+        if (!Objects.equals(name, existingProject.getName())) {
+            autocompleteIndex.rename(SuggestionType.PROJECT, projectId, name);
+            searchResultCache.onTextChange(existingProject.getName(), null, name, null);
+        }
+        String description = patchedValue(patchOperations, "/description", existingProject.getDescription());
+        if (!Objects.equals(description, existingProject.getDescription())) {
+            searchResultCache.onTextChange(null, existingProject.getDescription(), null, description);
+        }
     }
 
-    private boolean isDoneAndNotValidOperation(PatchOperation patchOperations, Project existingProject) {
-        return !ALLOWED_PATCH_FIELDS_FOR_DONE_PROJECTS.contains(patchOperations.getPath())
+    /**
+     * Changes the status of every project the filter selects in one update. Done and canceled projects
+     * keep their status, so the result can match fewer projects than the filter alone.
+     */
+    @CacheEvict(cacheNames = CacheConfig.PROJECTS, allEntries = true)
+    public BulkPatchResult applyBulkPatch(BulkPatch bulkPatch) {
+        FieldValidator.validateBulkProjectPatch(bulkPatch);
+        List<PatchOperation> patchOperations = bulkPatch.getOperations();
+        patchOperations.forEach(FieldConverter::convertProjectFields);
+
+        BulkFilter filter = bulkPatch.getFilter();
+        Set<ProjectStatus> statuses = filter.getStatus() == null ? null : EnumSet.of(ProjectStatus.fromString(filter.getStatus()));
+        for (PatchOperation operation : patchOperations) {
+            Set<ProjectStatus> allowed = FieldValidator.projectStatusesAllowedBefore(ProjectStatus.valueOf(operation.getValue()));
+            if (statuses == null) {
+                statuses = allowed;
+            } else {
+                statuses.retainAll(allowed);
+            }
+        }
+        if (statuses.isEmpty()) {
+            return new BulkPatchResult(0, 0);
+        }
+        return projectRepositoryCustom.saveOperations(filter.getIds(), statuses, patchOperations);
+    }
+
+    private boolean isDoneAndNotValidOperation(List<PatchOperation> patchOperations, Project existingProject) {
+        return patchOperations.stream().anyMatch(operation -> !ALLOWED_PATCH_FIELDS_FOR_DONE_PROJECTS.contains(operation.getPath()))
                 && existingProject.getStatus().equals(DONE);
     }
 
+    /**
+     * The value the field has after the patch, the last operation on it wins.
+     */
+    private static String patchedValue(List<PatchOperation> patchOperations, String path, String current) {
+        String value = current;
+        for (PatchOperation operation : patchOperations) {
+            if (path.equals(operation.getPath())) {
+                value = operation.getValue();
+            }
+        }
+        return value;
+    }
+
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.PROJECTS, key = "#projectId"),
+            @CacheEvict(cacheNames = CacheConfig.TASKS, allEntries = true)})
     public void deleteProject(String projectId) {
     	projectRepository.findById(projectId)
         .orElseThrow(() -> new ProjectNotFoundException("Cannot delete project: " + projectId + ". the project doesn't exist!"));
 
         //delete the project itself
     	projectRepository.deleteById(projectId);
+    	autocompleteIndex.removeProject(projectId);
 
         taskService.deleteTasksFromProject(projectId);
     }
@@ -0,0 +1,70 @@
+package be.sbs.timekeeper.application.service;
+
+import be.sbs.timekeeper.application.enums.ReportGrouping;
+import be.sbs.timekeeper.application.exception.BadRequestException;
+import be.sbs.timekeeper.application.repository.SessionRepositoryCustom;
+import be.sbs.timekeeper.application.repository.TaskRepositoryCustom;
+import be.sbs.timekeeper.application.valueobjects.WorkTimeReportRow;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+@Service
+public class ReportService {
+
+    private final SessionRepositoryCustom sessionRepositoryCustom;
+    private final TaskRepositoryCustom taskRepositoryCustom;
+
+    public ReportService(SessionRepositoryCustom sessionRepositoryCustom, TaskRepositoryCustom taskRepositoryCustom) {
+        this.sessionRepositoryCustom = sessionRepositoryCustom;
+        this.taskRepositoryCustom = taskRepositoryCustom;
+    }
+
+    public List<WorkTimeReportRow> getWorkTime(ReportGrouping grouping, LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new BadRequestException("from must be before to");
+        }
+        switch (grouping) {
+            case TASK:
+                return sessionRepositoryCustom.aggregateWorkTimePerTask(from, to);
+            case USER:
+                return sessionRepositoryCustom.aggregateWorkTimePerUser(from, to);
+            case DAY:
+                return sessionRepositoryCustom.aggregateWorkTimePerDay(from, to);
+            case PROJECT:
+                return getWorkTimePerProject(from, to);
+            default:
+                throw new BadRequestException("Cannot group work time by " + grouping);
+        }
+    }
+
+    /**
+     * Sessions only know their task, so the database totals per task first.
+     * Those rows (one per task, not per session) are then added up per project of their task.
+     */
+    private List<WorkTimeReportRow> getWorkTimePerProject(LocalDateTime from, LocalDateTime to) {
+        List<WorkTimeReportRow> perTask = sessionRepositoryCustom.aggregateWorkTimePerTask(from, to);
+        Map<String, String> projectIds = taskRepositoryCustom.findProjectIdsByTaskIds(perTask.stream()
+                .map(WorkTimeReportRow::getKey)
+                .collect(Collectors.toList()));
+
+        Map<String, long[]> perProject = new TreeMap<>();
+        for (WorkTimeReportRow row : perTask) {
+            String projectId = projectIds.get(row.getKey());
+            if (projectId != null) {
+                long[] totals = perProject.computeIfAbsent(projectId, id -> new long[2]);
+                totals[0] += row.getTotalSeconds();
+                totals[1] += row.getSessionCount();
+            }
+        }
+
+        List<WorkTimeReportRow> rows = new ArrayList<>();
+        perProject.forEach((projectId, totals) -> rows.add(new WorkTimeReportRow(projectId, totals[0], totals[1])));
+        return rows;
+    }
+}
@@ -0,0 +1,162 @@
+package be.sbs.timekeeper.application.service;
+
+import be.sbs.timekeeper.application.beans.Project;
+import be.sbs.timekeeper.application.beans.Session;
+import be.sbs.timekeeper.application.beans.Task;
+import be.sbs.timekeeper.application.configuration.CacheConfig;
+import be.sbs.timekeeper.application.repository.ProjectRepositoryCustom;
+import be.sbs.timekeeper.application.repository.SessionRepositoryCustom;
+import be.sbs.timekeeper.application.repository.TaskRepositoryCustom;
+import be.sbs.timekeeper.application.valueobjects.RollupRebuildReport;
+import be.sbs.timekeeper.application.valueobjects.WorkTimeRollup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the work time, session count and last activity of every task and project up to date.
+ * Each session change is applied as an atomic $inc on its task and the task's project,
+ * so reading a total never needs the sessions. {@link #rebuild()} recomputes everything from the sessions.
+ */
+@Service
+public class RollupService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RollupService.class);
+
+    private final TaskRepositoryCustom taskRepositoryCustom;
+    private final ProjectRepositoryCustom projectRepositoryCustom;
+    private final SessionRepositoryCustom sessionRepositoryCustom;
+    private final Cache tasksCache;
+    private final Cache projectsCache;
+    private final int batchSize;
+
+    public RollupService(TaskRepositoryCustom taskRepositoryCustom, ProjectRepositoryCustom projectRepositoryCustom,
+                         SessionRepositoryCustom sessionRepositoryCustom, CacheManager cacheManager,
+                         @Value("${timekeeper.rollup.rebuild-batch-size:500}") int batchSize) {
+        this.taskRepositoryCustom = taskRepositoryCustom;
+        this.projectRepositoryCustom = projectRepositoryCustom;
+        this.sessionRepositoryCustom = sessionRepositoryCustom;
+        this.tasksCache = cacheManager.getCache(CacheConfig.TASKS);
+        this.projectsCache = cacheManager.getCache(CacheConfig.PROJECTS);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Moves the contribution of a session from its old to its new state.
+     *
+     * @param before the session before the change, null when it was created
+     * @param after  the session after the change, null when it was deleted
+     */
+    public void onSessionChanged(Session before, Session after) {
+        Map<String, WorkTimeRollup> deltas = new LinkedHashMap<>();
+        if (before != null && before.getTaskId() != null) {
+            deltas.merge(before.getTaskId(), WorkTimeRollup.of(before).negate(), WorkTimeRollup::plus);
+        }
+        if (after != null && after.getTaskId() != null) {
+            deltas.merge(after.getTaskId(), WorkTimeRollup.of(after), WorkTimeRollup::plus);
+        }
+        deltas.forEach(this::apply);
+    }
+
+    /**
+     * The totals of a task go with it when it moves to another project.
+     */
+    public void onTaskMoved(Task task, String newProjectId) {
+        WorkTimeRollup rollup = WorkTimeRollup.of(task.getWorkTimeSeconds(), task.getSessionCount(), task.getLastActivity());
+        if (rollup.isEmpty()) {
+            return;
+        }
+        if (task.getProjectId() != null) {
+            projectRepositoryCustom.incrementRollup(task.getProjectId(), rollup.negate());
+            projectsCache.evict(task.getProjectId());
+        }
+        projectRepositoryCustom.incrementRollup(newProjectId, rollup);
+        projectsCache.evict(newProjectId);
+    }
+
+    public void onTaskDeleted(Task task) {
+        WorkTimeRollup rollup = WorkTimeRollup.of(task.getWorkTimeSeconds(), task.getSessionCount(), null);
+        if (!rollup.isEmpty() && task.getProjectId() != null) {
+            projectRepositoryCustom.incrementRollup(task.getProjectId(), rollup.negate());
+            projectsCache.evict(task.getProjectId());
+        }
+    }
+
+    private void apply(String taskId, WorkTimeRollup delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        taskRepositoryCustom.incrementRollup(taskId, delta)
+                .ifPresent(projectId -> {
+                    projectRepositoryCustom.incrementRollup(projectId, delta);
+                    projectsCache.evict(projectId);
+                });
+        tasksCache.evict(taskId);
+    }
+
+    /**
+     * Recomputes the task rollups from the sessions and then the project rollups and task counts from the tasks, one batch at a time.
+     * Sessions changed while the rebuild runs can be counted twice or not at all; running it again corrects that.
+     */
+    public RollupRebuildReport rebuild() {
+        RollupRebuildReport report = new RollupRebuildReport();
+
+        String lastTaskId = null;
+        List<Task> tasks;
+        do {
+            tasks = taskRepositoryCustom.findRollupBatch(lastTaskId, batchSize);
+            Map<String, WorkTimeRollup> actual = sessionRepositoryCustom.aggregateRollupsPerTask(
+                    tasks.stream().map(Task::getId).collect(Collectors.toList()));
+            for (Task task : tasks) {
+                WorkTimeRollup stored = WorkTimeRollup.of(task.getWorkTimeSeconds(), task.getSessionCount(), task.getLastActivity());
+                WorkTimeRollup recomputed = actual.getOrDefault(task.getId(), WorkTimeRollup.EMPTY);
+                boolean drifted = task.getWorkTimeSeconds() == null || !stored.equals(recomputed);
+                if (drifted) {
+                    taskRepositoryCustom.setRollup(task.getId(), recomputed);
+                }
+                report.taskChecked(stored, recomputed, drifted);
+            }
+            lastTaskId = tasks.isEmpty() ? lastTaskId : tasks.get(tasks.size() - 1).getId();
+        } while (tasks.size() == batchSize);
+
+        String lastProjectId = null;
+        List<Project> projects;
+        do {
+            projects = projectRepositoryCustom.findRollupBatch(lastProjectId, batchSize);
+            List<String> projectIds = projects.stream().map(Project::getId).collect(Collectors.toList());
+            Map<String, WorkTimeRollup> actual = taskRepositoryCustom.aggregateRollupsPerProject(projectIds);
+            Map<String, Integer> taskCounts = taskRepositoryCustom.countTasksPerProject(projectIds);
+            for (Project project : projects) {
+                WorkTimeRollup stored = WorkTimeRollup.of(project.getWorkTimeSeconds(), project.getSessionCount(), project.getLastActivity());
+                WorkTimeRollup recomputed = actual.getOrDefault(project.getId(), WorkTimeRollup.EMPTY);
+                boolean drifted = project.getWorkTimeSeconds() == null || !stored.equals(recomputed);
+                if (drifted) {
+                    projectRepositoryCustom.setRollup(project.getId(), recomputed);
+                }
+                report.projectChecked(stored, recomputed, drifted);
+
+                int numberOfTasks = taskCounts.getOrDefault(project.getId(), 0);
+                if (project.getNumberOfTasks() != numberOfTasks) {
+                    projectRepositoryCustom.setTaskCount(project.getId(), numberOfTasks);
+                    report.taskCountCorrected();
+                }
+            }
+            lastProjectId = projects.isEmpty() ? lastProjectId : projects.get(projects.size() - 1).getId();
+        } while (projects.size() == batchSize);
+
+        tasksCache.clear();
+        projectsCache.clear();
+        LOGGER.info("Rebuilt rollups: corrected " + report.getTasksCorrected() + " of " + report.getTasksChecked() + " tasks and "
+                + report.getProjectsCorrected() + " of " + report.getProjectsChecked() + " projects, "
+                + report.getTaskCountsCorrected() + " task counts");
+        return report;
+    }
+}
@@ -0,0 +1,133 @@
+package be.sbs.timekeeper.application.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the lookups of a search side by side on a bounded pool, each with its own deadline.
+ * A lookup that misses its deadline, or can't start because the pool is saturated, is left out
+ * and the search is answered without it. Every lookup's duration is recorded as timekeeper.search.source,
+ * by source and outcome; the ones left out are counted in timekeeper.search.source.missed.
+ */
+@Component
+public class SearchFanOut {
+
+    private final MeterRegistry meterRegistry;
+    private final long sourceTimeoutNanos;
+    private final ThreadPoolExecutor executor;
+
+    public SearchFanOut(MeterRegistry meterRegistry,
+                        @Value("${timekeeper.search.threads:0}") int threads,
+                        @Value("${timekeeper.search.queue-size:64}") int queueSize,
+                        @Value("${timekeeper.search.source-timeout-millis:500}") long sourceTimeoutMillis) {
+        this.meterRegistry = meterRegistry;
+        this.sourceTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sourceTimeoutMillis);
+
+        //the lookups wait on Mongo, not on the CPU
+        int poolSize = threads > 0 ? threads : Math.max(2, Runtime.getRuntime().availableProcessors());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "search-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "search", Collections.emptyList()).bindTo(meterRegistry);
+    }
+
+    /**
+     * Starts the lookup, its deadline runs from now.
+     */
+    public <T> Lookup<T> submit(String source, Callable<T> lookup) {
+        long deadline = System.nanoTime() + sourceTimeoutNanos;
+        try {
+            return new Lookup<>(source, executor.submit(timed(source, lookup)), deadline);
+        } catch (RejectedExecutionException e) {
+            missed(source, "rejected");
+            return new Lookup<>(source, null, deadline);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> Callable<T> timed(String source, Callable<T> lookup) {
+        return () -> {
+            long start = System.nanoTime();
+            String outcome = "error";
+            try {
+                T result = lookup.call();
+                outcome = "success";
+                return result;
+            } finally {
+                meterRegistry.timer("timekeeper.search.source", "source", source, "outcome", outcome)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    private void missed(String source, String reason) {
+        meterRegistry.counter("timekeeper.search.source.missed", "source", source, "reason", reason).increment();
+    }
+
+    /**
+     * A running lookup of one source.
+     */
+    public final class Lookup<T> {
+        private final String source;
+        private final Future<T> future;
+        private final long deadline;
+
+        private Lookup(String source, Future<T> future, long deadline) {
+            this.source = source;
+            this.future = future;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Waits for the result until the deadline. Errors of the lookup itself are thrown.
+         *
+         * @return empty when the lookup didn't run or missed its deadline
+         */
+        public Optional<T> await() {
+            if (future == null) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.ofNullable(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                missed(source, "timeout");
+                return Optional.empty();
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the " + source + " search", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("The " + source + " search failed", e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package be.sbs.timekeeper.application.service;
+
+import be.sbs.timekeeper.application.beans.Project;
+import be.sbs.timekeeper.application.beans.SearchResult;
+import be.sbs.timekeeper.application.beans.Task;
+import be.sbs.timekeeper.application.configuration.CacheConfig;
+import be.sbs.timekeeper.application.configuration.invalidation.CacheInvalidation;
+import be.sbs.timekeeper.application.configuration.invalidation.InvalidationBus;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Search results by normalized keyword, page and fields. An entry is dropped when a document in it changes,
+ * and when a task or project gets or loses a name or description word that could match its keyword;
+ * the other entries stay. Words are compared on their first {@value #TERM_PREFIX_LENGTH} letters, which stemming
+ * leaves alone, so a change never misses an entry it could affect.
+ * Document changes are learned from the Tasks and Projects evictions on the {@link InvalidationBus}, text changes
+ * are reported by {@link TaskService} and {@link ProjectService} and announced on the bus for the other instances.
+ * Hit rate is in the cache.gets metrics of the SearchResults cache, dropped entries in timekeeper.search.cache.invalidations.
+ * Cached results are shared, callers must not modify them.
+ */
+@Component
+public class SearchResultCache {
+    public static final String NAME = "SearchResults";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchResultCache.class);
+    private static final int TERM_PREFIX_LENGTH = 3;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final InvalidationBus invalidationBus;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, Entry> entries;
+    //changes on every invalidation, a result loaded meanwhile may be stale and isn't stored
+    private final AtomicLong generation = new AtomicLong();
+
+    public SearchResultCache(InvalidationBus invalidationBus, MeterRegistry meterRegistry,
+                             @Value("${timekeeper.search.cache.maximum-size:1000}") long maximumSize,
+                             @Value("${timekeeper.search.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.invalidationBus = invalidationBus;
+        this.meterRegistry = meterRegistry;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, NAME);
+        invalidationBus.subscribe(this::onInvalidation);
+    }
+
+    /**
+     * @return the cached result, or the loaded one which is cached when it is complete and no write happened while loading
+     */
+    public SearchResult get(String keyword, Pageable pageable, FieldSelection selection, Supplier<SearchResult> loader) {
+        String normalized = normalize(keyword);
+        String key = normalized + '|' + pageable.getPageNumber() + '|' + pageable.getPageSize() + '|'
+                + (selection.isAll() ? "*" : String.join(",", selection.getFields()));
+        Entry cached = entries.getIfPresent(key);
+        if (cached != null) {
+            return cached.result;
+        }
+        long loadedAt = generation.get();
+        SearchResult result = loader.get();
+        if (!result.isPartial() && loadedAt == generation.get()) {
+            entries.put(key, new Entry(result, terms(normalized)));
+        }
+        return result;
+    }
+
+    /**
+     * A task or project was created, or its name or description changed. Use null for what didn't exist before.
+     */
+    public void onTextChange(String oldName, String oldDescription, String newName, String newDescription) {
+        if (Objects.equals(oldName, newName) && Objects.equals(oldDescription, newDescription)) {
+            return;
+        }
+        Set<String> terms = terms(oldName, oldDescription, newName, newDescription);
+        if (terms.isEmpty()) {
+            return;
+        }
+        invalidateTerms(terms);
+        try {
+            invalidationBus.publish(new CacheInvalidation(invalidationBus.getOrigin(), NAME, String.join(" ", terms), Instant.now()));
+        } catch (RuntimeException e) {
+            //the other instances catch up when their entries expire
+            LOGGER.error("Could not announce search result invalidation", e);
+        }
+    }
+
+    private void onInvalidation(CacheInvalidation invalidation) {
+        if (CacheConfig.TASKS.equals(invalidation.getCacheName()) || CacheConfig.PROJECTS.equals(invalidation.getCacheName())) {
+            //every write to a task or project evicts it, here and on the other instances
+            if (invalidation.isClear()) {
+                invalidate("clear", entry -> true);
+            } else {
+                invalidate("document", entry -> entry.ids.contains(invalidation.getKey()));
+            }
+        } else if (NAME.equals(invalidation.getCacheName()) && !invalidationBus.getOrigin().equals(invalidation.getOrigin())) {
+            invalidateTerms(new HashSet<>(Arrays.asList(invalidation.getKey().split(" "))));
+        }
+    }
+
+    private void invalidateTerms(Set<String> terms) {
+        //an empty keyword lists every document, any text change can affect it
+        invalidate("text", entry -> entry.terms.isEmpty() || entry.terms.stream().anyMatch(term -> overlaps(term, terms)));
+    }
+
+    /**
+     * Shorter words are kept whole, "ab" can match a word stemmed from "abs".
+     */
+    private static boolean overlaps(String term, Set<String> terms) {
+        return terms.stream().anyMatch(other -> term.startsWith(other) || other.startsWith(term));
+    }
+
+    private void invalidate(String reason, Predicate<Entry> affected) {
+        generation.incrementAndGet();
+        long removed = 0;
+        for (Map.Entry<String, Entry> entry : entries.asMap().entrySet()) {
+            if (affected.test(entry.getValue()) && entries.asMap().remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            meterRegistry.counter("timekeeper.search.cache.invalidations", "reason", reason).increment(removed);
+        }
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String withoutAccents = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return WHITESPACE.matcher(withoutAccents.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    static Set<String> terms(String... texts) {
+        return Arrays.stream(texts)
+                .map(SearchResultCache::normalize)
+                .flatMap(WORD_SEPARATORS::splitAsStream)
+                .filter(word -> !word.isEmpty())
+                .map(word -> word.length() > TERM_PREFIX_LENGTH ? word.substring(0, TERM_PREFIX_LENGTH) : word)
+                .collect(Collectors.toSet());
+    }
+
+    private static final class Entry {
+        private final SearchResult result;
+        private final Set<String> terms;
+        private final Set<String> ids;
+
+        private Entry(SearchResult result, Set<String> terms) {
+            this.result = result;
+            this.terms = terms;
+            this.ids = Stream.concat(result.getTasks().stream().map(Task::getId), result.getProjects().stream().map(Project::getId))
+                    .collect(Collectors.toSet());
+        }
+    }
+}
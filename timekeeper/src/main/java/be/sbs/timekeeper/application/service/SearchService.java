@@ -1,13 +1,22 @@
 package be.sbs.timekeeper.application.service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import be.sbs.timekeeper.application.beans.Project;
 import be.sbs.timekeeper.application.beans.SearchResult;
 import be.sbs.timekeeper.application.beans.Task;
+import be.sbs.timekeeper.application.enums.SuggestionType;
+import be.sbs.timekeeper.application.exception.BadRequestException;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import be.sbs.timekeeper.application.valueobjects.Suggestion;
 
 @Service
 public class SearchService {
@@ -16,17 +25,69 @@ public class SearchService {
 	
 	@Autowired
 	private ProjectService projectService;
-	
-	public SearchResult getSearchResult(String keyword) {
-		List<Task> tasks;
-		List<Project> projects;
-		if(keyword == null) {
-			tasks = taskService.getAll();
-			projects = projectService.getAll();
-		}else{
-			tasks = taskService.getTasksByKeyword(keyword);
-			projects = projectService.getProjectsByKeyword(keyword);
+
+	@Autowired
+	private AutocompleteIndex autocompleteIndex;
+
+	@Autowired
+	private SearchResultCache searchResultCache;
+
+	@Autowired
+	private SearchFanOut searchFanOut;
+
+	@Value("${timekeeper.search.default-page-size:20}")
+	private int defaultPageSize;
+
+	@Value("${timekeeper.search.maximum-page-size:100}")
+	private int maximumPageSize;
+
+	@Value("${timekeeper.search.autocomplete.default-limit:10}")
+	private int defaultSuggestionLimit;
+
+	@Value("${timekeeper.search.autocomplete.maximum-limit:50}")
+	private int maximumSuggestionLimit;
+
+	/**
+	 * One page of the tasks and one page of the projects matching the keyword, ranked by relevance.
+	 * Tasks and projects are looked up in parallel; when one of them misses its deadline the result
+	 * is marked partial. Repeated searches are answered from the {@link SearchResultCache}.
+	 *
+	 * @param page zero based page number, null for the first page
+	 * @param size page size, null for the default size, capped at the maximum size
+	 */
+	public SearchResult getSearchResult(String keyword, Integer page, Integer size, FieldSelection selection) {
+		if (page != null && page < 0) {
+			throw new BadRequestException("page cannot be negative");
+		}
+		if (size != null && size < 1) {
+			throw new BadRequestException("size must be positive");
+		}
+		Pageable pageable = PageRequest.of(page == null ? 0 : page, size == null ? defaultPageSize : Math.min(size, maximumPageSize));
+
+		return searchResultCache.get(keyword, pageable, selection, () -> {
+			SearchFanOut.Lookup<List<Task>> taskLookup = searchFanOut.submit("tasks",
+					() -> taskService.getTasksByKeyword(keyword, pageable, selection));
+			SearchFanOut.Lookup<List<Project>> projectLookup = searchFanOut.submit("projects",
+					() -> projectService.getProjectsByKeyword(keyword, pageable, selection));
+
+			Optional<List<Task>> tasks = taskLookup.await();
+			Optional<List<Project>> projects = projectLookup.await();
+			SearchResult result = new SearchResult(tasks.orElseGet(ArrayList::new), projects.orElseGet(ArrayList::new));
+			result.setPartial(!tasks.isPresent() || !projects.isPresent());
+			return result;
+		});
+	}
+
+	/**
+	 * The tasks and projects with a word in their name starting with the prefix, served from memory.
+	 *
+	 * @param type  only tasks or only projects, null for both
+	 * @param limit number of suggestions, null for the default, capped at the maximum
+	 */
+	public List<Suggestion> getSuggestions(String prefix, SuggestionType type, Integer limit) {
+		if (limit != null && limit < 1) {
+			throw new BadRequestException("limit must be positive");
 		}
-		return new SearchResult(tasks, projects);
+		return autocompleteIndex.complete(prefix, type, limit == null ? defaultSuggestionLimit : Math.min(limit, maximumSuggestionLimit));
 	}
 }
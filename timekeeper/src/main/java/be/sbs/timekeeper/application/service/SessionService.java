@@ -4,19 +4,26 @@ import be.sbs.timekeeper.application.beans.Session;
 import be.sbs.timekeeper.application.beans.Task;
 import be.sbs.timekeeper.application.beans.User;
 import be.sbs.timekeeper.application.enums.TaskStatus;
+import be.sbs.timekeeper.application.exception.BadRequestException;
 import be.sbs.timekeeper.application.exception.SessionAlreadyRunningException;
 import be.sbs.timekeeper.application.exception.SessionNotFoundException;
 import be.sbs.timekeeper.application.repository.SessionRepository;
 import be.sbs.timekeeper.application.repository.SessionRepositoryCustom;
 import be.sbs.timekeeper.application.valueobjects.FieldConverter;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
 import be.sbs.timekeeper.application.valueobjects.FieldValidator;
 import be.sbs.timekeeper.application.valueobjects.PatchOperation;
+import be.sbs.timekeeper.application.valueobjects.SessionCursor;
+import be.sbs.timekeeper.application.valueobjects.SessionPage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Service
 public class SessionService {
@@ -33,20 +40,48 @@ public class SessionService {
     @Autowired
     private UserService userService;
 
-    public List<Session> getAll() {
-        return sessionRepository.findAll();
-    }
-    
-    public List<Session> getAllSessionsFromTask(Task task) {
-        return sessionRepositoryCustom.findSessionsByTaskId(task.getId());
-    }
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
 
-    public List<Session> getAllSessionsFromUser(User user) {
-    	return sessionRepositoryCustom.findSessionsByUserId(user.getId());
-    }
-    
-    public List<Session> getAllSessionsFromTaskAndUser(Task task, User user) {
-    	return sessionRepositoryCustom.findSessionsByTaskIdAndUserId(task.getId(), user.getId());
+    @Autowired
+    private RollupService rollupService;
+
+    @Autowired
+    private TimesheetService timesheetService;
+
+    @Value("${timekeeper.sessions.default-page-size:500}")
+    private int defaultPageSize;
+
+    @Value("${timekeeper.sessions.maximum-page-size:1000}")
+    private int maximumPageSize;
+
+    /**
+     * One page of sessions ordered by startTime, optionally restricted to a task, a user and a startTime range.
+     *
+     * @param task   null for sessions of every task
+     * @param user   null for sessions of every user
+     * @param cursor cursor returned with the previous page, null for the first page
+     * @param limit  page size, null for the default size, capped at the maximum size
+     */
+    public SessionPage getSessions(Task task, User user, LocalDateTime from, LocalDateTime to, String cursor, Integer limit,
+                                   FieldSelection selection) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new BadRequestException("from must be before to");
+        }
+        if (limit != null && limit < 1) {
+            throw new BadRequestException("limit must be positive");
+        }
+        int pageSize = limit == null ? defaultPageSize : Math.min(limit, maximumPageSize);
+        SessionCursor after = cursor == null ? null : SessionCursor.decode(cursor);
+
+        //one extra session tells whether there is a next page
+        List<Session> sessions = sessionRepositoryCustom.findSessionsPage(task == null ? null : task.getId(),
+                user == null ? null : user.getId(), from, to, after, pageSize + 1, selection);
+        if (sessions.size() <= pageSize) {
+            return new SessionPage(sessions, null);
+        }
+        List<Session> page = sessions.subList(0, pageSize);
+        return new SessionPage(page, SessionCursor.after(page.get(pageSize - 1)));
     }
     
     public Session getById(String sessionId) {
@@ -54,7 +89,13 @@ public class SessionService {
     }
 
     public Session getActiveSessionByUser(User user){
-    	return sessionRepositoryCustom.findActiveSessionByUserId(user.getId()).orElseThrow(() -> new SessionNotFoundException("No active session found"));
+    	Optional<Session> trackedSession = activeSessionRegistry.findByUserId(user.getId());
+    	if (trackedSession.isPresent()) {
+    	    return trackedSession.get();
+    	}
+    	//the registry only knows the sessions started on this instance, fall back to the database for the others
+    	return sessionRepositoryCustom.findActiveSessionByUserId(user.getId())
+    	        .orElseThrow(() -> new SessionNotFoundException("No active session found"));
     }
     
     public void addSession(Session session) {
@@ -63,11 +104,15 @@ public class SessionService {
     	FieldValidator.validatePOSTSession(session, task.getStatus());
         FieldConverter.setDefaultSessionFields(session);
         
-        sessionRepositoryCustom.findActiveSessionByUserId(session.getUserId())
-                               .ifPresent(s -> { throw new SessionAlreadyRunningException("There is already a session running for this user");});
+        //as for startSessionFor, the unique running session index rejects a second running session, on any instance
+        if (session.getEndTime() == null) {
+            session.setRunning(true);
+        }
         
-        Session newSession = sessionRepository.insert(session);
+        Session newSession = insertSession(session);
         if(newSession != null) {
+        	activeSessionRegistry.track(newSession);
+        	sessionChanged(null, newSession);
         	//check if TaskStatus needs to be changed
         	if(task.getStatus() == TaskStatus.READY_TO_START) {
         		//set taskStatus to IN_PROGRESS
@@ -76,43 +121,80 @@ public class SessionService {
         }
     }
     
-    public void applyPatch(String sessionId, PatchOperation patchOperation) {
-        FieldValidator.validatePATCHSession(patchOperation);
-        FieldConverter.convertSessionFields(patchOperation);
-        sessionRepository.findById(sessionId)
+    public void applyPatch(String sessionId, List<PatchOperation> patchOperations) {
+        FieldValidator.validatePATCHSession(patchOperations);
+        patchOperations.forEach(FieldConverter::convertSessionFields);
+        Session existingSession = sessionRepository.findById(sessionId)
                 .orElseThrow(() -> new SessionNotFoundException("Cannot patch session: " + sessionId + ". the session doesn't exist!"));
-        sessionRepositoryCustom.saveOperation(sessionId, patchOperation);
+        sessionRepositoryCustom.saveOperations(sessionId, patchOperations).ifPresent(patchedSession -> {
+            activeSessionRegistry.track(patchedSession);
+            sessionChanged(existingSession, patchedSession);
+        });
     }
 
     public void updateSession(Session session) {
         FieldValidator.validatePUTSession(session);
-        sessionRepository.findById(session.getId())
+        Session existingSession = sessionRepository.findById(session.getId())
                 .orElseThrow(() -> new SessionNotFoundException("Cannot update session: " + session.getId() + ". the session doesn't exist!"));
-        sessionRepository.save(session);
+        //clients never send the flag, it follows from the endTime as on insert so the unique index keeps seeing running sessions
+        session.setRunning(session.getEndTime() == null ? Boolean.TRUE : null);
+        try {
+            //the version is incremented by the database, in the same write
+            if (!sessionRepositoryCustom.replace(session)) {
+                throw new SessionNotFoundException("Cannot update session: " + session.getId() + ". the session doesn't exist!");
+            }
+        } catch (DuplicateKeyException e) {
+            throw new SessionAlreadyRunningException("A session is already running for this user");
+        }
+        activeSessionRegistry.untrack(existingSession);
+        activeSessionRegistry.track(session);
+        sessionChanged(existingSession, session);
     }
 
     public void deleteSession(String sessionId) {
-        sessionRepository.findById(sessionId)
+        Session existingSession = sessionRepository.findById(sessionId)
                 .orElseThrow(() -> new SessionNotFoundException("Session : " + sessionId + " doesn't exist!"));
         sessionRepository.deleteById(sessionId);
+        activeSessionRegistry.untrack(existingSession);
+        sessionChanged(existingSession, null);
     }
 
+    /**
+     * The unique running session index decides whether another session is already running,
+     * so starting is a single insert and stays correct when several instances receive clicks at the same time.
+     */
     public void startSessionFor(User user, String taskId) {
-        sessionRepositoryCustom.findActiveSessionByUserId(user.getId())
-                .ifPresent(session -> {
-                    throw new SessionAlreadyRunningException("A session is already running for this user");
-                });
-
         createNewSessionFor(user, taskId);
     }
 
     public void stopSessionFor(User user) {
+        Optional<Session> trackedSession = activeSessionRegistry.findByUserId(user.getId());
+        if (trackedSession.isPresent()) {
+            if (stop(trackedSession.get())) {
+                return;
+            }
+            //stopped or deleted through another instance, the user may have started another session there
+            activeSessionRegistry.untrack(trackedSession.get());
+        }
+        //the registry only knows the sessions started on this instance, fall back to the database for the others
         Session session = sessionRepositoryCustom.findActiveSessionByUserId(user.getId())
                 .orElseThrow(() -> new SessionNotFoundException("No active sessions for " + user.getId() + " " + user.getName()));
+        if (!stop(session)) {
+            throw new SessionNotFoundException("No active sessions for " + user.getId() + " " + user.getName());
+        }
+    }
 
-        session.setEndTime(LocalDateTime.now());
-        session.setWorkTime(Duration.between(session.getStartTime(), session.getEndTime()));
-        sessionRepository.save(session);
+    /**
+     * @return false when the session wasn't running anymore
+     */
+    private boolean stop(Session session) {
+        LocalDateTime endTime = LocalDateTime.now();
+        Optional<Session> stoppedSession = sessionRepositoryCustom.stopRunningSession(session.getId(), endTime, Duration.between(session.getStartTime(), endTime));
+        stoppedSession.ifPresent(stopped -> {
+            activeSessionRegistry.track(stopped);
+            sessionChanged(session, stopped);
+        });
+        return stoppedSession.isPresent();
     }
 
     private void createNewSessionFor(User user, String taskId) {
@@ -120,6 +202,23 @@ public class SessionService {
         session.setStartTime(LocalDateTime.now());
         session.setUserId(user.getId());
         session.setTaskId(taskId);
-        sessionRepository.save(session);
+        session.setRunning(true);
+        activeSessionRegistry.track(insertSession(session));
+    }
+
+    private Session insertSession(Session session) {
+        try {
+            return sessionRepository.insert(session);
+        } catch (DuplicateKeyException e) {
+            throw new SessionAlreadyRunningException("A session is already running for this user");
+        }
+    }
+
+    /**
+     * Keeps everything derived from sessions (task and project rollups, timesheet days) in line with a session change.
+     */
+    private void sessionChanged(Session before, Session after) {
+        rollupService.onSessionChanged(before, after);
+        timesheetService.onSessionChanged(before, after);
     }
 }
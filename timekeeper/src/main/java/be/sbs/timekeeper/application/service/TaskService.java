@@ -2,17 +2,28 @@ package be.sbs.timekeeper.application.service;
 
 import be.sbs.timekeeper.application.beans.Project;
 import be.sbs.timekeeper.application.beans.Task;
+import be.sbs.timekeeper.application.configuration.CacheConfig;
 import be.sbs.timekeeper.application.enums.ProjectStatus;
 import be.sbs.timekeeper.application.enums.TaskStatus;
 import be.sbs.timekeeper.application.exception.TaskNotFoundException;
+import be.sbs.timekeeper.application.repository.CollectionVersions;
 import be.sbs.timekeeper.application.repository.TaskRepository;
 import be.sbs.timekeeper.application.repository.TaskRepositoryCustom;
+import be.sbs.timekeeper.application.valueobjects.BulkFilter;
+import be.sbs.timekeeper.application.valueobjects.BulkPatch;
+import be.sbs.timekeeper.application.valueobjects.BulkPatchResult;
 import be.sbs.timekeeper.application.valueobjects.FieldConverter;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
 import be.sbs.timekeeper.application.valueobjects.FieldValidator;
 import be.sbs.timekeeper.application.valueobjects.PatchOperation;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 @Service
 public class TaskService {
@@ -23,24 +34,46 @@ public class TaskService {
 
     private final ProjectService projectService;
 
-    public TaskService(TaskRepository taskRepository, TaskRepositoryCustom taskRepositoryCustom, ProjectService projectService) {
+    private final RollupService rollupService;
+
+    private final CollectionVersions collectionVersions;
+
+    private final AutocompleteIndex autocompleteIndex;
+
+    private final SearchResultCache searchResultCache;
+
+    public TaskService(TaskRepository taskRepository, TaskRepositoryCustom taskRepositoryCustom, ProjectService projectService,
+                       RollupService rollupService, CollectionVersions collectionVersions, AutocompleteIndex autocompleteIndex,
+                       SearchResultCache searchResultCache) {
         this.taskRepository = taskRepository;
         this.taskRepositoryCustom = taskRepositoryCustom;
         this.projectService = projectService;
+        this.rollupService = rollupService;
+        this.collectionVersions = collectionVersions;
+        this.autocompleteIndex = autocompleteIndex;
+        this.searchResultCache = searchResultCache;
     }
 
-    public List<Task> getAll() {
-        return taskRepository.findAll();
+    public List<Task> getAll(FieldSelection selection) {
+        return taskRepositoryCustom.findTasks(selection);
     }
 
-    public List<Task> getAllTasksFromProject(Project project) {
-        return taskRepositoryCustom.findTasksByProjectId(project.getId());
+    public List<Task> getAllTasksFromProject(Project project, FieldSelection selection) {
+        return taskRepositoryCustom.findTasksByProjectId(project.getId(), selection);
     }
     
-    public List<Task> getTasksByKeyword(String keyword){
-    	return taskRepository.findByNameContainsOrDescriptionContains(keyword,keyword);
+    /**
+     * Changes whenever any task changes, the ETag of the task lists.
+     */
+    public long getCollectionVersion() {
+        return collectionVersions.current(Task.class);
     }
 
+    public List<Task> getTasksByKeyword(String keyword, Pageable pageable, FieldSelection selection){
+    	return taskRepositoryCustom.findByKeyword(keyword, pageable, selection);
+    }
+
+    @Cacheable(CacheConfig.TASKS)
     public Task getById(String taskId) {
         return taskRepository.findById(taskId).orElseThrow(() -> new TaskNotFoundException("Task not found"));
     }
@@ -51,6 +84,9 @@ public class TaskService {
         //check if project exists
         Project project = projectService.getById(task.getProjectId());
         taskRepository.insert(task);
+        autocompleteIndex.putTask(task);
+        searchResultCache.onTextChange(null, null, task.getName(), task.getDescription());
+        projectService.adjustTaskCount(task.getProjectId(), 1);
         
         //change the status of the project
         if(project.getStatus() == ProjectStatus.EMPTY) {
@@ -59,34 +95,82 @@ public class TaskService {
         }
     }
     
-    public void applyPatch(String taskId, PatchOperation patchOperation) {
-        FieldValidator.validatePATCHTask(patchOperation);
-        FieldConverter.convertTaskFields(patchOperation);
-        taskRepository.findById(taskId)
-                .orElseThrow(() -> new TaskNotFoundException("Cannot patch task: " + taskId + ". the task doesn't exist!"));
-        taskRepositoryCustom.saveOperation(taskId, patchOperation);
+    @CacheEvict(cacheNames = CacheConfig.TASKS, key = "#taskId")
+    public void applyPatch(String taskId, List<PatchOperation> patchOperations) {
+        FieldValidator.validatePATCHTask(patchOperations);
+        patchOperations.forEach(FieldConverter::convertTaskFields);
+        if (!taskRepositoryCustom.saveOperations(taskId, patchOperations)) {
+            throw new TaskNotFoundException("Cannot patch task: " + taskId + ". the task doesn't exist!");
+        }
     }
 
+    /**
+     * Changes the priority or status of every task the filter selects in one update. Done and canceled tasks
+     * keep their status, so the result can match fewer tasks than the filter alone.
+     */
+    @CacheEvict(cacheNames = CacheConfig.TASKS, allEntries = true)
+    public BulkPatchResult applyBulkPatch(BulkPatch bulkPatch) {
+        FieldValidator.validateBulkTaskPatch(bulkPatch);
+        List<PatchOperation> patchOperations = bulkPatch.getOperations();
+        patchOperations.forEach(FieldConverter::convertTaskFields);
+
+        BulkFilter filter = bulkPatch.getFilter();
+        Set<TaskStatus> statuses = filter.getStatus() == null ? null : EnumSet.of(TaskStatus.fromString(filter.getStatus()));
+        for (PatchOperation operation : patchOperations) {
+            if ("/status".equals(operation.getPath())) {
+                Set<TaskStatus> allowed = FieldValidator.taskStatusesAllowedBefore(TaskStatus.valueOf(operation.getValue()));
+                if (statuses == null) {
+                    statuses = allowed;
+                } else {
+                    statuses.retainAll(allowed);
+                }
+            }
+        }
+        if (statuses != null && statuses.isEmpty()) {
+            return new BulkPatchResult(0, 0);
+        }
+        return taskRepositoryCustom.saveOperations(filter.getIds(), filter.getProjectId(), statuses, patchOperations);
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.TASKS, key = "#task.id")
     public void updateTask(Task task) {
         FieldValidator.validatePUTTask(task);
-        taskRepository.findById(task.getId())
+        Task existingTask = taskRepository.findById(task.getId())
                 .orElseThrow(() -> new TaskNotFoundException("Cannot update task: " + task.getId() + ". the task doesn't exist!"));
         //check if project exists
         projectService.getById(task.getProjectId());
-        taskRepository.save(task);
+        //the rollups are maintained by RollupService, not by clients, the replacement leaves them and the version to the database
+        if (!taskRepositoryCustom.replace(task)) {
+            throw new TaskNotFoundException("Cannot update task: " + task.getId() + ". the task doesn't exist!");
+        }
+        autocompleteIndex.putTask(task);
+        searchResultCache.onTextChange(existingTask.getName(), existingTask.getDescription(), task.getName(), task.getDescription());
+        if (!task.getProjectId().equals(existingTask.getProjectId())) {
+            rollupService.onTaskMoved(existingTask, task.getProjectId());
+            projectService.adjustTaskCount(existingTask.getProjectId(), -1);
+            projectService.adjustTaskCount(task.getProjectId(), 1);
+        }
     }
 
+    @CacheEvict(cacheNames = CacheConfig.TASKS, key = "#taskId")
     public void deleteTask(String taskId) {
-        taskRepository.findById(taskId).orElseThrow(() -> new TaskNotFoundException("Task : " + taskId + " doesn't exist!"));
+        Task existingTask = taskRepository.findById(taskId).orElseThrow(() -> new TaskNotFoundException("Task : " + taskId + " doesn't exist!"));
         taskRepository.deleteById(taskId);
+        autocompleteIndex.removeTask(taskId);
+        rollupService.onTaskDeleted(existingTask);
+        projectService.adjustTaskCount(existingTask.getProjectId(), -1);
     }
     
+    @CacheEvict(cacheNames = CacheConfig.TASKS, allEntries = true)
     public void deleteTasksFromProject(String projectId) {
     	//check if project exists
     	projectService.getById(projectId);
-    	taskRepositoryCustom.deleteTasksFromProject(projectId);
+    	long deleted = taskRepositoryCustom.deleteTasksFromProject(projectId);
+    	autocompleteIndex.removeTasksOfProject(projectId);
+    	projectService.adjustTaskCount(projectId, (int) -deleted);
     }
 
+    @CacheEvict(cacheNames = CacheConfig.TASKS, key = "#taskId")
 	public void setTaskStatus(String taskId, TaskStatus taskStatus) {
 		taskRepositoryCustom.updateTaskStatus(taskId, taskStatus);		
 	}
@@ -0,0 +1,119 @@
+package be.sbs.timekeeper.application.service;
+
+import be.sbs.timekeeper.application.beans.Session;
+import be.sbs.timekeeper.application.beans.TimesheetDay;
+import be.sbs.timekeeper.application.enums.TimesheetPeriod;
+import be.sbs.timekeeper.application.repository.SessionRepositoryCustom;
+import be.sbs.timekeeper.application.repository.TimesheetRepositoryCustom;
+import be.sbs.timekeeper.application.valueobjects.SessionDaySplitter;
+import be.sbs.timekeeper.application.valueobjects.Timesheet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a document per user and day with the work time per task, split at midnight,
+ * so a week or month of timesheet is a single indexed read.
+ */
+@Service
+public class TimesheetService {
+
+    private final TimesheetRepositoryCustom timesheetRepositoryCustom;
+    private final SessionRepositoryCustom sessionRepositoryCustom;
+    private final int batchSize;
+
+    public TimesheetService(TimesheetRepositoryCustom timesheetRepositoryCustom, SessionRepositoryCustom sessionRepositoryCustom,
+                            @Value("${timekeeper.timesheet.rebuild-batch-size:1000}") int batchSize) {
+        this.timesheetRepositoryCustom = timesheetRepositoryCustom;
+        this.sessionRepositoryCustom = sessionRepositoryCustom;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Moves the time of a session from the days of its old state to the days of its new state.
+     *
+     * @param before the session before the change, null when it was created
+     * @param after  the session after the change, null when it was deleted
+     */
+    public void onSessionChanged(Session before, Session after) {
+        Map<String, Map<LocalDate, Map<String, Long>>> deltas = new HashMap<>();
+        addTo(deltas, before, -1);
+        addTo(deltas, after, 1);
+        deltas.forEach(timesheetRepositoryCustom::increment);
+    }
+
+    public Timesheet getTimesheet(String userId, TimesheetPeriod period, LocalDate date) {
+        LocalDate from = period == TimesheetPeriod.WEEK
+                ? date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+                : date.withDayOfMonth(1);
+        LocalDate to = period == TimesheetPeriod.WEEK
+                ? from.plusDays(6)
+                : date.with(TemporalAdjusters.lastDayOfMonth());
+
+        Map<LocalDate, TimesheetDay> stored = timesheetRepositoryCustom.findDays(userId, from, to).stream()
+                .collect(Collectors.toMap(TimesheetDay::getDay, Function.identity()));
+        List<TimesheetDay> days = new ArrayList<>();
+        Map<String, Long> taskSeconds = new TreeMap<>();
+        long totalSeconds = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            TimesheetDay timesheetDay = stored.getOrDefault(day, new TimesheetDay(userId, day));
+            //tasks whose sessions were moved or deleted stay behind with 0 seconds
+            timesheetDay.getTaskSeconds().values().removeIf(seconds -> seconds == 0);
+            timesheetDay.getTaskSeconds().forEach((taskId, seconds) -> taskSeconds.merge(taskId, seconds, Long::sum));
+            totalSeconds += timesheetDay.getTotalSeconds();
+            days.add(timesheetDay);
+        }
+        return new Timesheet(userId, from, to, days, taskSeconds, totalSeconds);
+    }
+
+    /**
+     * Recomputes every timesheet day from the finished sessions, a batch of sessions at a time.
+     *
+     * @return the number of sessions that were added
+     */
+    public long rebuild() {
+        timesheetRepositoryCustom.deleteAll();
+        long sessions = 0;
+        Map<String, Map<LocalDate, Map<String, Long>>> deltas = new HashMap<>();
+        try (CloseableIterator<Session> finishedSessions = sessionRepositoryCustom.streamFinishedSessions()) {
+            while (finishedSessions.hasNext()) {
+                addTo(deltas, finishedSessions.next(), 1);
+                if (++sessions % batchSize == 0) {
+                    deltas.forEach(timesheetRepositoryCustom::increment);
+                    deltas.clear();
+                }
+            }
+        }
+        deltas.forEach(timesheetRepositoryCustom::increment);
+        return sessions;
+    }
+
+    private static void addTo(Map<String, Map<LocalDate, Map<String, Long>>> deltas, Session session, int sign) {
+        if (session == null || session.getUserId() == null || session.getTaskId() == null) {
+            return;
+        }
+        Map<LocalDate, Map<String, Long>> perDay = deltas.computeIfAbsent(session.getUserId(), userId -> new LinkedHashMap<>());
+        SessionDaySplitter.split(session.getStartTime(), session.getEndTime()).forEach((day, seconds) -> {
+            Map<String, Long> perTask = perDay.computeIfAbsent(day, d -> new HashMap<>());
+            perTask.merge(session.getTaskId(), sign * seconds, Long::sum);
+            if (perTask.get(session.getTaskId()) == 0) {
+                perTask.remove(session.getTaskId());
+            }
+            if (perTask.isEmpty()) {
+                perDay.remove(day);
+            }
+        });
+    }
+}
@@ -2,6 +2,7 @@ package be.sbs.timekeeper.application.service;
 
 import be.sbs.timekeeper.application.beans.Task;
 import be.sbs.timekeeper.application.beans.User;
+import be.sbs.timekeeper.application.configuration.CacheConfig;
 import be.sbs.timekeeper.application.exception.ActivationTokenNotCorrectException;
 import be.sbs.timekeeper.application.exception.BadMailFormatException;
 import be.sbs.timekeeper.application.exception.ResetTokenExpiredException;
@@ -10,15 +11,22 @@ import be.sbs.timekeeper.application.exception.UserAlreadyExistsException;
 import be.sbs.timekeeper.application.exception.UserNotActiveException;
 import be.sbs.timekeeper.application.exception.UserNotFoundException;
 import be.sbs.timekeeper.application.repository.UserRepository;
+import be.sbs.timekeeper.application.repository.UserRepositoryCustom;
+import be.sbs.timekeeper.application.security.PasswordHasher;
+import be.sbs.timekeeper.application.security.SignedTokenService;
+import be.sbs.timekeeper.application.security.TokenCache;
 import be.sbs.timekeeper.application.valueobjects.FieldValidator;
 import be.sbs.timekeeper.application.valueobjects.PatchOperation;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Optional;
 import java.util.Random;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -27,26 +35,35 @@ import java.util.regex.Pattern;
 public class UserService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final UserRepositoryCustom userRepositoryCustom;
+    private final PasswordHasher passwordHasher;
     private final TaskService taskService;
+    private final TokenCache tokenCache;
+    private final SignedTokenService signedTokenService;
+    private final Cache usersCache;
     private final static Duration MAX_RESET_TOKEN_LIFE = Duration.ofMinutes(10);
     
     @Autowired
     private MailService mailService;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, MailService mailService, TaskService taskService) {
+    public UserService(UserRepository userRepository, UserRepositoryCustom userRepositoryCustom, PasswordHasher passwordHasher, MailService mailService, TaskService taskService, TokenCache tokenCache, SignedTokenService signedTokenService, CacheManager cacheManager) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.userRepositoryCustom = userRepositoryCustom;
+        this.passwordHasher = passwordHasher;
         this.mailService = mailService;
         this.taskService = taskService;
+        this.tokenCache = tokenCache;
+        this.signedTokenService = signedTokenService;
+        this.usersCache = cacheManager.getCache(CacheConfig.USERS);
     }
 
+    @Cacheable(CacheConfig.USERS)
     public User getById(String userId) {
         return userRepository.findById(userId).orElseThrow(() -> new UserNotFoundException("User not found"));
     }
     
     public User getByToken(String token) {
-    	return userRepository.findFirstByToken(token).orElseThrow(() -> new UserNotFoundException("User not found"));
+    	return findByToken(token).orElseThrow(() -> new UserNotFoundException("User not found"));
     }
     
     public User login(User inputUser) {
@@ -61,9 +78,24 @@ public class UserService {
         	throw new UserNotActiveException("User not active");
         }
 
-        outputUser.setToken(createToken());
+        //saving drops every cached token of the user, the previous one included
+        outputUser.setToken(signedTokenService.isEnabled() ? signedTokenService.issue(outputUser.getId()) : createToken());
+        User loggedInUser = save(outputUser);
 
-        return userRepository.save(outputUser);
+        if (passwordHasher.needsRehash(loggedInUser.getPassword())) {
+            rehashPassword(loggedInUser, inputUser.getPassword());
+        }
+        return loggedInUser;
+    }
+
+    private void rehashPassword(User user, String rawPassword) {
+        String userId = user.getId();
+        String currentHash = user.getPassword();
+        passwordHasher.rehashInBackground(rawPassword, newHash -> {
+            userRepositoryCustom.replacePasswordHash(userId, currentHash, newHash);
+            tokenCache.invalidate(userId);
+            usersCache.evict(userId);
+        });
     }
     
     public void activate(User inputUser) {
@@ -80,7 +112,7 @@ public class UserService {
     	
     	outputUser.setActive(true);
     	
-    	userRepository.save(outputUser);
+    	save(outputUser);
     }
     
     public User register(User inputUser) {
@@ -89,10 +121,10 @@ public class UserService {
     	}
     	checkIfUserExists(inputUser);
     	
-    	inputUser.setPassword(passwordEncoder.encode(inputUser.getPassword()));
+    	inputUser.setPassword(passwordHasher.encode(inputUser.getPassword()));
     	inputUser.setActive(false);
     	inputUser.setActivationToken(createToken());
-    	User outputUser = userRepository.save(inputUser);
+    	User outputUser = save(inputUser);
     	
     	mailService.sendActivationMail(outputUser.getEmail(), outputUser.getActivationToken(), outputUser.getName());
     	return outputUser;
@@ -110,7 +142,7 @@ public class UserService {
     	
     	outputUser.setResetPasswordToken(createToken());
     	outputUser.setResetTime(LocalDateTime.now());
-    	outputUser = userRepository.save(outputUser);
+    	outputUser = save(outputUser);
     	
     	mailService.sendResetPasswordMail(outputUser);
     }
@@ -123,11 +155,11 @@ public class UserService {
     		throw new ResetTokenExpiredException("Reset token expired");
     	}
     	
-    	outputUser.setPassword(passwordEncoder.encode(inputUser.getPassword()));
+    	outputUser.setPassword(passwordHasher.encode(inputUser.getPassword()));
     	outputUser.setResetPasswordToken(null);
     	outputUser.setResetTime(null);
     	
-    	userRepository.save(outputUser);
+    	save(outputUser);
     }
 
 	private void checkIfUserExists(User inputUser) {
@@ -143,12 +175,34 @@ public class UserService {
     
     
     private boolean passwordIsCorrect(String inputPassword, String outputPassword) {
-        return passwordEncoder.matches(inputPassword, outputPassword);
+        return passwordHasher.matches(inputPassword, outputPassword);
     }
 
     public boolean userAuthenticated(String token){
+        if (signedTokenService.isSignedToken(token)) {
+            return signedTokenService.verify(token).isPresent();
+        }
+        return findByToken(token).isPresent();
+    }
+
+    private Optional<User> findByToken(String token) {
+        if (signedTokenService.isSignedToken(token)) {
+            return signedTokenService.verify(token)
+                    .flatMap(userId -> tokenCache.get(token, t -> userRepository.findById(userId)));
+        }
+        return tokenCache.get(token, userRepository::findFirstByToken);
+    }
 
-        return userRepository.findFirstByToken(token).isPresent();
+    /**
+     * Every write of a user goes through here so the token and user caches never serve a stale user.
+     * The caches are invalidated after the write, as in rehashPassword: invalidated before, a concurrent read
+     * could load the old document again and cache it for the whole ttl.
+     */
+    private User save(User user) {
+        User savedUser = userRepository.save(user);
+        tokenCache.invalidate(savedUser.getId());
+        usersCache.evict(savedUser.getId());
+        return savedUser;
     }
 
     private String createToken() {
@@ -173,7 +227,7 @@ public class UserService {
     }
 
     public void saveUser(User user){
-        userRepository.save(user);
+        save(user);
     }
 
     public void applyPatch(PatchOperation patch, String token) {
@@ -182,6 +236,6 @@ public class UserService {
         Task task = taskService.getById(patch.getValue());
         user.setSelectedTask(task.getId());
         user.setSelectedProject(task.getProjectId());
-        userRepository.save(user);
+        save(user);
     }
 }
@@ -0,0 +1,45 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import java.util.List;
+
+/**
+ * The documents a bulk patch applies to: every given criterion must match.
+ */
+public class BulkFilter {
+    private List<String> ids;
+    private String projectId;
+    private String status;
+
+    public BulkFilter() {
+    }
+
+    public BulkFilter(List<String> ids, String projectId, String status) {
+        this.ids = ids;
+        this.projectId = projectId;
+        this.status = status;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<String> ids) {
+        this.ids = ids;
+    }
+
+    public String getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(String projectId) {
+        this.projectId = projectId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,35 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import java.util.List;
+
+/**
+ * Patch operations applied at once to every document matching the filter.
+ */
+public class BulkPatch {
+    private BulkFilter filter;
+    private List<PatchOperation> operations;
+
+    public BulkPatch() {
+    }
+
+    public BulkPatch(BulkFilter filter, List<PatchOperation> operations) {
+        this.filter = filter;
+        this.operations = operations;
+    }
+
+    public BulkFilter getFilter() {
+        return filter;
+    }
+
+    public void setFilter(BulkFilter filter) {
+        this.filter = filter;
+    }
+
+    public List<PatchOperation> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<PatchOperation> operations) {
+        this.operations = operations;
+    }
+}
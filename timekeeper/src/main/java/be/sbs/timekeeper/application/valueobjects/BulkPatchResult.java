@@ -0,0 +1,23 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+/**
+ * Outcome of a bulk patch. Documents that matched but already had the patched values are not modified;
+ * documents whose status may not change to the patched one are not matched.
+ */
+public class BulkPatchResult {
+    private final long matched;
+    private final long modified;
+
+    public BulkPatchResult(long matched, long modified) {
+        this.matched = matched;
+        this.modified = modified;
+    }
+
+    public long getMatched() {
+        return matched;
+    }
+
+    public long getModified() {
+        return modified;
+    }
+}
@@ -7,8 +7,14 @@ import be.sbs.timekeeper.application.enums.Priority;
 import be.sbs.timekeeper.application.enums.ProjectStatus;
 import be.sbs.timekeeper.application.enums.TaskStatus;
 
+import be.sbs.timekeeper.application.exception.BadRequestException;
+
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
 public class FieldConverter {
 
@@ -42,6 +48,29 @@ public class FieldConverter {
         if (project.getStatus() == null) project.setStatus(ProjectStatus.EMPTY);
     }
 
+    /**
+     * The value of a patch as the type of the field it targets, so it is stored like the rest of the document
+     * (a formatted string or a native date, depending on the temporal format).
+     */
+    public static Object typedValue(PatchOperation operation) {
+        try {
+            switch (operation.getPath()) {
+                case "/startTime":
+                case "/endTime":
+                case "/currentTime":
+                    return LocalDateTime.parse(operation.getValue(), DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"));
+                case "/deadLine":
+                    return LocalDate.parse(operation.getValue(), DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+                case "/workTime":
+                    return Duration.ofSeconds(LocalTime.parse(operation.getValue(), DateTimeFormatter.ofPattern("HH:mm:ss")).toSecondOfDay());
+                default:
+                    return operation.getValue();
+            }
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid value for " + operation.getPath() + ": " + operation.getValue());
+        }
+    }
+
     public static void convertProjectFields(PatchOperation operation) {
         switch (operation.getPath()) {
             case "/status":
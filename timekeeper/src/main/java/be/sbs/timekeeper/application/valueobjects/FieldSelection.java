@@ -0,0 +1,93 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import be.sbs.timekeeper.application.exception.BadRequestException;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The properties a client asked for with ?fields=name,status. The id is always part of it.
+ * The repositories read only these fields from Mongo, and the documents annotated with
+ * {@code @JsonFilter(FieldSelection.FILTER)} only write these properties.
+ */
+public class FieldSelection {
+    public static final String FILTER = "fieldSelection";
+    public static final String PARAMETER = "fields";
+    public static final FieldSelection ALL = new FieldSelection(null);
+
+    private static final String ID = "id";
+
+    private final Set<String> fields;
+
+    private FieldSelection(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * @param fields comma separated property names, null or empty for every property
+     * @param types  the documents the response contains, every name must be a property of one of them
+     */
+    public static FieldSelection parse(String fields, Class<?>... types) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return ALL;
+        }
+        Set<String> known = Arrays.stream(types)
+                .flatMap(type -> Arrays.stream(type.getDeclaredFields()))
+                .filter(field -> !Modifier.isStatic(field.getModifiers()) && !field.isAnnotationPresent(JsonIgnore.class))
+                .map(Field::getName)
+                .collect(Collectors.toSet());
+
+        Set<String> selected = new LinkedHashSet<>();
+        selected.add(ID);
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!known.contains(name)) {
+                throw new BadRequestException("Unknown field: " + name);
+            }
+            selected.add(name);
+        }
+        return new FieldSelection(selected);
+    }
+
+    public boolean isAll() {
+        return fields == null;
+    }
+
+    /**
+     * @return the selected properties, empty when every property is selected
+     */
+    public Set<String> getFields() {
+        return fields == null ? Collections.emptySet() : Collections.unmodifiableSet(fields);
+    }
+
+    /**
+     * Wraps a response body so it is written with only the selected properties.
+     */
+    public MappingJacksonValue applyTo(Object body) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        value.setFilters(toFilterProvider());
+        return value;
+    }
+
+    public FilterProvider toFilterProvider() {
+        return new SimpleFilterProvider().addFilter(FILTER,
+                isAll() ? SimpleBeanPropertyFilter.serializeAll() : SimpleBeanPropertyFilter.filterOutAllExcept(fields));
+    }
+
+    /**
+     * Filters used when no selection applies, every property is written.
+     */
+    public static FilterProvider defaultFilterProvider() {
+        return ALL.toFilterProvider();
+    }
+}
@@ -15,7 +15,9 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 public class FieldValidator {
 
@@ -24,6 +26,10 @@ public class FieldValidator {
     private static final List<String> PATCHABLE_FIELDS_FOR_PROJECTS = Arrays.asList("/deadLine", "/name", "/description", "/status");
     private static final List<String> PATCHABLE_FIELDS_FOR_USERS = Arrays.asList("/selectedTask");
     private static final List<String> PERMITTED_PATCH_OP = Collections.singletonList("replace");
+    private static final List<String> BULK_PATCHABLE_FIELDS_FOR_TASKS = Arrays.asList("/priority", "/status");
+    private static final List<String> BULK_PATCHABLE_FIELDS_FOR_PROJECTS = Collections.singletonList("/status");
+    private static final Set<TaskStatus> CLOSED_TASK_STATUSES = EnumSet.of(TaskStatus.DONE, TaskStatus.CANCELED);
+    private static final Set<ProjectStatus> CLOSED_PROJECT_STATUSES = EnumSet.of(ProjectStatus.DONE, ProjectStatus.CANCELED);
 
     private enum DateType {
         DATE_ONLY("yyyy-MM-dd"),
@@ -45,11 +51,11 @@ public class FieldValidator {
     
     public static void validatePUTSession(Session session) {
     	//modifying sessions linked to tasks should always be allowed, regardless of task status
+    	//without an endTime the session is (or becomes again) the running one of its user
         if (session.getId() == null
                 || session.getTaskId() == null
                 || session.getUserId() == null
                 || session.getStartTime() == null
-                || session.getEndTime() == null
                 || session.getWorkTime() == null)
             throw new BadRequestException("Update not permitted for these values.");
     }
@@ -65,8 +71,9 @@ public class FieldValidator {
     	}
     }
 
-    public static void validatePATCHSession(PatchOperation patchOperation) {
-        if (!isValidSessionPatchRequest(patchOperation))
+    public static void validatePATCHSession(List<PatchOperation> patchOperations) {
+        validatePatchDocument(patchOperations);
+        if (!patchOperations.stream().allMatch(FieldValidator::isValidSessionPatchRequest))
             throw new BadRequestException("Patch not permitted for these values.");
     }
 
@@ -112,8 +119,9 @@ public class FieldValidator {
             throw new BadRequestException("Cannot create " + task.toString());
     }
 
-    public static void validatePATCHTask(PatchOperation patchOperation) {
-        if (!isValidTaskPatchRequest(patchOperation))
+    public static void validatePATCHTask(List<PatchOperation> patchOperations) {
+        validatePatchDocument(patchOperations);
+        if (!patchOperations.stream().allMatch(FieldValidator::isValidTaskPatchRequest))
             throw new BadRequestException("Patch not permitted for these values.");
     }
 
@@ -163,8 +171,9 @@ public class FieldValidator {
         }
     }
 
-    public static void validatePATCHProject(PatchOperation operation) {
-        if (!isValidProjectPatchRequest(operation))
+    public static void validatePATCHProject(List<PatchOperation> patchOperations) {
+        validatePatchDocument(patchOperations);
+        if (!patchOperations.stream().allMatch(FieldValidator::isValidProjectPatchRequest))
             throw new BadRequestException("Patch not permitted for these values.");
     }
 
@@ -192,6 +201,85 @@ public class FieldValidator {
         return false;
     }
     
+    //---validators for bulk patches
+
+    /**
+     * Tasks are selected by ids or project, optionally narrowed by status, and only their priority and status change.
+     */
+    public static void validateBulkTaskPatch(BulkPatch bulkPatch) {
+        BulkFilter filter = validateBulkPatchDocument(bulkPatch);
+        if ((filter.getIds() == null || filter.getIds().isEmpty()) && filter.getProjectId() == null)
+            throw new BadRequestException("A bulk patch of tasks needs ids or a projectId.");
+        if (filter.getStatus() != null && !isValidEnumValue(() -> TaskStatus.fromString(filter.getStatus())))
+            throw new BadRequestException("Unknown task status: " + filter.getStatus());
+        if (!bulkPatch.getOperations().stream().allMatch(operation -> BULK_PATCHABLE_FIELDS_FOR_TASKS.contains(operation.getPath())
+                && isValidTaskPatchRequest(operation)))
+            throw new BadRequestException("Patch not permitted for these values.");
+    }
+
+    /**
+     * Projects are selected by ids or status and only their status changes. EMPTY follows from the task count, it can't be set.
+     */
+    public static void validateBulkProjectPatch(BulkPatch bulkPatch) {
+        BulkFilter filter = validateBulkPatchDocument(bulkPatch);
+        if (filter.getProjectId() != null)
+            throw new BadRequestException("Projects can't be filtered on a projectId.");
+        if ((filter.getIds() == null || filter.getIds().isEmpty()) && filter.getStatus() == null)
+            throw new BadRequestException("A bulk patch of projects needs ids or a status.");
+        if (filter.getStatus() != null && !isValidEnumValue(() -> ProjectStatus.fromString(filter.getStatus())))
+            throw new BadRequestException("Unknown project status: " + filter.getStatus());
+        if (!bulkPatch.getOperations().stream().allMatch(operation -> BULK_PATCHABLE_FIELDS_FOR_PROJECTS.contains(operation.getPath())
+                && isValidProjectPatchRequest(operation)
+                && ProjectStatus.fromString(operation.getValue()) != ProjectStatus.EMPTY))
+            throw new BadRequestException("Patch not permitted for these values.");
+    }
+
+    /**
+     * A bulk patch doesn't reopen closed (done or canceled) tasks, and doesn't move them from one closed status to the other.
+     *
+     * @return the statuses from which a task may be moved to the target status
+     */
+    public static Set<TaskStatus> taskStatusesAllowedBefore(TaskStatus target) {
+        Set<TaskStatus> allowed = EnumSet.complementOf(EnumSet.copyOf(CLOSED_TASK_STATUSES));
+        allowed.add(target);
+        return allowed;
+    }
+
+    /**
+     * The same rule as for tasks: closed projects stay as they are.
+     *
+     * @return the statuses from which a project may be moved to the target status
+     */
+    public static Set<ProjectStatus> projectStatusesAllowedBefore(ProjectStatus target) {
+        Set<ProjectStatus> allowed = EnumSet.complementOf(EnumSet.copyOf(CLOSED_PROJECT_STATUSES));
+        allowed.add(target);
+        return allowed;
+    }
+
+    private static BulkFilter validateBulkPatchDocument(BulkPatch bulkPatch) {
+        if (bulkPatch == null || bulkPatch.getFilter() == null)
+            throw new BadRequestException("A bulk patch needs a filter.");
+        validatePatchDocument(bulkPatch.getOperations());
+        return bulkPatch.getFilter();
+    }
+
+    private static boolean isValidEnumValue(Runnable parse) {
+        try {
+            parse.run();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A patch is a list of operations that are applied together or not at all, so it is rejected as a whole.
+     */
+    private static void validatePatchDocument(List<PatchOperation> patchOperations) {
+        if (patchOperations == null || patchOperations.isEmpty() || patchOperations.contains(null))
+            throw new BadRequestException("Patch needs at least one operation.");
+    }
+
     private static boolean allowedFieldsArePresent(PatchOperation operation, List<String> allowedOperations) {
     	return allowedOperations.contains(operation.getPath())
     			&& PERMITTED_PATCH_OP.contains(operation.getOp())
@@ -0,0 +1,42 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import java.util.List;
+import java.util.Map;
+
+public class IndexDriftReport {
+    private final Map<String, CollectionIndexDrift> collections;
+
+    public IndexDriftReport(Map<String, CollectionIndexDrift> collections) {
+        this.collections = collections;
+    }
+
+    public boolean isInSync() {
+        return collections.values().stream().allMatch(CollectionIndexDrift::isInSync);
+    }
+
+    public Map<String, CollectionIndexDrift> getCollections() {
+        return collections;
+    }
+
+    public static class CollectionIndexDrift {
+        private final List<String> missing;
+        private final List<String> unexpected;
+
+        public CollectionIndexDrift(List<String> missing, List<String> unexpected) {
+            this.missing = missing;
+            this.unexpected = unexpected;
+        }
+
+        public boolean isInSync() {
+            return missing.isEmpty() && unexpected.isEmpty();
+        }
+
+        public List<String> getMissing() {
+            return missing;
+        }
+
+        public List<String> getUnexpected() {
+            return unexpected;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Body of a PATCH: a JSON Patch array of operations. A single operation object, as older clients send it,
+ * is read as an array of one. Only PATCH bodies accept that form, other lists in request bodies must be arrays.
+ */
+@JsonDeserialize(using = PatchDocument.Deserializer.class)
+public class PatchDocument extends ArrayList<PatchOperation> {
+    private static final long serialVersionUID = 1L;
+
+    static class Deserializer extends JsonDeserializer<PatchDocument> {
+        @Override
+        public PatchDocument deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            PatchDocument document = new PatchDocument();
+            if (parser.isExpectedStartArrayToken()) {
+                document.addAll(Arrays.asList(context.readValue(parser, PatchOperation[].class)));
+            } else {
+                document.add(context.readValue(parser, PatchOperation.class));
+            }
+            return document;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+/**
+ * Outcome of recomputing the task and project rollups: how many were checked and how many had drifted.
+ */
+public class RollupRebuildReport {
+    private long tasksChecked;
+    private long tasksCorrected;
+    private long taskDriftSeconds;
+    private long projectsChecked;
+    private long projectsCorrected;
+    private long projectDriftSeconds;
+    private long taskCountsCorrected;
+
+    public void taskChecked(WorkTimeRollup stored, WorkTimeRollup actual, boolean corrected) {
+        tasksChecked++;
+        if (corrected) {
+            tasksCorrected++;
+            taskDriftSeconds += Math.abs(stored.getWorkTimeSeconds() - actual.getWorkTimeSeconds());
+        }
+    }
+
+    public void projectChecked(WorkTimeRollup stored, WorkTimeRollup actual, boolean corrected) {
+        projectsChecked++;
+        if (corrected) {
+            projectsCorrected++;
+            projectDriftSeconds += Math.abs(stored.getWorkTimeSeconds() - actual.getWorkTimeSeconds());
+        }
+    }
+
+    public void taskCountCorrected() {
+        taskCountsCorrected++;
+    }
+
+    public long getTasksChecked() {
+        return tasksChecked;
+    }
+
+    public long getTasksCorrected() {
+        return tasksCorrected;
+    }
+
+    public long getTaskDriftSeconds() {
+        return taskDriftSeconds;
+    }
+
+    public long getProjectsChecked() {
+        return projectsChecked;
+    }
+
+    public long getProjectsCorrected() {
+        return projectsCorrected;
+    }
+
+    public long getProjectDriftSeconds() {
+        return projectDriftSeconds;
+    }
+
+    public long getTaskCountsCorrected() {
+        return taskCountsCorrected;
+    }
+}
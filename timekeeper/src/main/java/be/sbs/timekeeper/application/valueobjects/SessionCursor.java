@@ -0,0 +1,57 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import be.sbs.timekeeper.application.beans.Session;
+import be.sbs.timekeeper.application.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a list of sessions ordered by (startTime, id), handed to clients as an opaque token.
+ */
+public class SessionCursor {
+    //keeps the fraction of a second that native startTimes have, and still reads the cursors handed out without one
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final String SEPARATOR = "|";
+
+    private final LocalDateTime startTime;
+    private final String id;
+
+    public SessionCursor(LocalDateTime startTime, String id) {
+        this.startTime = startTime;
+        this.id = id;
+    }
+
+    public static SessionCursor after(Session session) {
+        return new SessionCursor(session.getStartTime(), session.getId());
+    }
+
+    public static SessionCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            if (separator < 0 || separator == value.length() - 1) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return new SessionCursor(LocalDateTime.parse(value.substring(0, separator), FORMAT), value.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    public String encode() {
+        String value = startTime.format(FORMAT) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
@@ -0,0 +1,34 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Splits the time between a start and an end over the days it covers, cutting at midnight.
+ */
+public class SessionDaySplitter {
+
+    private SessionDaySplitter() {
+    }
+
+    /**
+     * @return seconds per day in chronological order, empty when end isn't after start
+     */
+    public static Map<LocalDate, Long> split(LocalDateTime start, LocalDateTime end) {
+        Map<LocalDate, Long> secondsPerDay = new LinkedHashMap<>();
+        if (start == null || end == null || !end.isAfter(start)) {
+            return secondsPerDay;
+        }
+        LocalDateTime from = start;
+        while (from.isBefore(end)) {
+            LocalDateTime midnight = from.toLocalDate().plusDays(1).atStartOfDay();
+            LocalDateTime until = end.isBefore(midnight) ? end : midnight;
+            secondsPerDay.put(from.toLocalDate(), Duration.between(from, until).getSeconds());
+            from = until;
+        }
+        return secondsPerDay;
+    }
+}
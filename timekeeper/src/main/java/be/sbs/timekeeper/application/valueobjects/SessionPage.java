@@ -0,0 +1,26 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import be.sbs.timekeeper.application.beans.Session;
+
+import java.util.List;
+
+public class SessionPage {
+    private final List<Session> sessions;
+    private final SessionCursor next;
+
+    public SessionPage(List<Session> sessions, SessionCursor next) {
+        this.sessions = sessions;
+        this.next = next;
+    }
+
+    public List<Session> getSessions() {
+        return sessions;
+    }
+
+    /**
+     * @return the cursor of the next page, null when this is the last page
+     */
+    public SessionCursor getNext() {
+        return next;
+    }
+}
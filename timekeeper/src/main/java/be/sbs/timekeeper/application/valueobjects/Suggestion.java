@@ -0,0 +1,36 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import be.sbs.timekeeper.application.enums.SuggestionType;
+
+/**
+ * A task or project whose name matches what the user typed so far. Tasks carry their projectId.
+ */
+public class Suggestion {
+    private final SuggestionType type;
+    private final String id;
+    private final String name;
+    private final String projectId;
+
+    public Suggestion(SuggestionType type, String id, String name, String projectId) {
+        this.type = type;
+        this.id = id;
+        this.name = name;
+        this.projectId = projectId;
+    }
+
+    public SuggestionType getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getProjectId() {
+        return projectId;
+    }
+}
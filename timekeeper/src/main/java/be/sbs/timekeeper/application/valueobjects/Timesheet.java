@@ -0,0 +1,55 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import be.sbs.timekeeper.application.beans.TimesheetDay;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every day of a week or month for one user, days without work included, with the totals per task.
+ */
+public class Timesheet {
+    private final String userId;
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private final LocalDate from;
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private final LocalDate to;
+    private final List<TimesheetDay> days;
+    private final Map<String, Long> taskSeconds;
+    private final long totalSeconds;
+
+    public Timesheet(String userId, LocalDate from, LocalDate to, List<TimesheetDay> days, Map<String, Long> taskSeconds, long totalSeconds) {
+        this.userId = userId;
+        this.from = from;
+        this.to = to;
+        this.days = days;
+        this.taskSeconds = taskSeconds;
+        this.totalSeconds = totalSeconds;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public List<TimesheetDay> getDays() {
+        return days;
+    }
+
+    public Map<String, Long> getTaskSeconds() {
+        return taskSeconds;
+    }
+
+    public long getTotalSeconds() {
+        return totalSeconds;
+    }
+}
@@ -0,0 +1,32 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+/**
+ * Work time of every finished session that shares the same group key (a task, project or user id, or a day).
+ */
+public class WorkTimeReportRow {
+    private String key;
+    private long totalSeconds;
+    private long sessionCount;
+
+    public WorkTimeReportRow(String key, long totalSeconds, long sessionCount) {
+        this.key = key;
+        this.totalSeconds = totalSeconds;
+        this.sessionCount = sessionCount;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getTotalSeconds() {
+        return totalSeconds;
+    }
+
+    public long getSessionCount() {
+        return sessionCount;
+    }
+
+    public long getAverageSeconds() {
+        return sessionCount == 0 ? 0 : totalSeconds / sessionCount;
+    }
+}
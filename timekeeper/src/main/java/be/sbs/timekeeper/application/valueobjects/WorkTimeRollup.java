@@ -0,0 +1,89 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import be.sbs.timekeeper.application.beans.Session;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Accumulated work time, number of finished sessions and the end of the last one.
+ * Used both as the totals stored on a task or project and as the change a single session makes to them.
+ */
+public class WorkTimeRollup {
+    public static final WorkTimeRollup EMPTY = new WorkTimeRollup(0, 0, null);
+
+    private final long workTimeSeconds;
+    private final long sessionCount;
+    private final LocalDateTime lastActivity;
+
+    public WorkTimeRollup(long workTimeSeconds, long sessionCount, LocalDateTime lastActivity) {
+        this.workTimeSeconds = workTimeSeconds;
+        this.sessionCount = sessionCount;
+        this.lastActivity = lastActivity;
+    }
+
+    /**
+     * @return what the session adds to the totals of its task, EMPTY while it is running
+     */
+    public static WorkTimeRollup of(Session session) {
+        if (session == null || session.getStartTime() == null || session.getEndTime() == null) {
+            return EMPTY;
+        }
+        return new WorkTimeRollup(Duration.between(session.getStartTime(), session.getEndTime()).getSeconds(), 1, session.getEndTime());
+    }
+
+    public static WorkTimeRollup of(Long workTimeSeconds, Long sessionCount, LocalDateTime lastActivity) {
+        return new WorkTimeRollup(workTimeSeconds == null ? 0 : workTimeSeconds, sessionCount == null ? 0 : sessionCount, lastActivity);
+    }
+
+    /**
+     * The last activity can't be taken back, it stays on the totals until they are rebuilt.
+     */
+    public WorkTimeRollup negate() {
+        return new WorkTimeRollup(-workTimeSeconds, -sessionCount, null);
+    }
+
+    public WorkTimeRollup plus(WorkTimeRollup other) {
+        LocalDateTime last = lastActivity == null || (other.lastActivity != null && other.lastActivity.isAfter(lastActivity))
+                ? other.lastActivity
+                : lastActivity;
+        return new WorkTimeRollup(workTimeSeconds + other.workTimeSeconds, sessionCount + other.sessionCount, last);
+    }
+
+    public boolean isEmpty() {
+        return workTimeSeconds == 0 && sessionCount == 0 && lastActivity == null;
+    }
+
+    public long getWorkTimeSeconds() {
+        return workTimeSeconds;
+    }
+
+    public long getSessionCount() {
+        return sessionCount;
+    }
+
+    public LocalDateTime getLastActivity() {
+        return lastActivity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        WorkTimeRollup that = (WorkTimeRollup) o;
+        return workTimeSeconds == that.workTimeSeconds
+                && sessionCount == that.sessionCount
+                && Objects.equals(lastActivity, that.lastActivity);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(workTimeSeconds, sessionCount, lastActivity);
+    }
+
+    @Override
+    public String toString() {
+        return "WorkTimeRollup{workTimeSeconds=" + workTimeSeconds + ", sessionCount=" + sessionCount + ", lastActivity=" + lastActivity + '}';
+    }
+}
@@ -0,0 +1,53 @@
+package be.sbs.timekeeper.application.configuration;
+
+import be.sbs.timekeeper.application.configuration.invalidation.LoopbackInvalidationBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BroadcastingCacheTest {
+
+    private MeterRegistry meterRegistry;
+    private BroadcastingCache nodeA;
+    private BroadcastingCache nodeB;
+    private BroadcastingCache otherCacheOnNodeB;
+
+    @BeforeEach
+    void setUp() {
+        LoopbackInvalidationBus bus = new LoopbackInvalidationBus();
+        meterRegistry = new SimpleMeterRegistry();
+        nodeA = new BroadcastingCache(new ConcurrentMapCache(CacheConfig.PROJECTS), bus, "a", meterRegistry);
+        nodeB = new BroadcastingCache(new ConcurrentMapCache(CacheConfig.PROJECTS), bus, "b", meterRegistry);
+        otherCacheOnNodeB = new BroadcastingCache(new ConcurrentMapCache(CacheConfig.TASKS), bus, "b", meterRegistry);
+    }
+
+    @Test
+    void evictionOnOneInstanceEvictsTheOthers() {
+        nodeA.put("p1", "project");
+        nodeB.put("p1", "project");
+        nodeB.put("p2", "project");
+        otherCacheOnNodeB.put("p1", "task");
+
+        nodeA.evict("p1");
+
+        assertThat(nodeB.get("p1")).isNull();
+        assertThat(nodeB.get("p2")).isNotNull();
+        assertThat(otherCacheOnNodeB.get("p1")).isNotNull();
+        assertThat(meterRegistry.get("timekeeper.cache.invalidation.lag").tag("cache", CacheConfig.PROJECTS).timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void clearOnOneInstanceClearsTheOthers() {
+        nodeB.put("p1", "project");
+        nodeB.put("p2", "project");
+
+        nodeA.clear();
+
+        assertThat(nodeB.get("p1")).isNull();
+        assertThat(nodeB.get("p2")).isNull();
+    }
+}
@@ -0,0 +1,62 @@
+package be.sbs.timekeeper.application.repository;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CollectionVersionsTest {
+
+    @Mock
+    private MongoOperations mongoOperations;
+
+    @Test
+    void aFailedBumpIsRetried() {
+        when(mongoOperations.getCollectionName(Retried.class)).thenReturn("retried");
+        when(mongoOperations.upsert(any(Query.class), any(Update.class), eq(CollectionVersions.COLLECTION)))
+                .thenThrow(new DataAccessResourceFailureException("timeout"))
+                .thenReturn(null);
+
+        CollectionVersions.bump(mongoOperations, Retried.class);
+
+        verify(mongoOperations, times(2)).upsert(any(Query.class), any(Update.class), eq(CollectionVersions.COLLECTION));
+    }
+
+    @Test
+    void aBumpThatKeepsFailingFailsTheRequestAndIsMadeBeforeTheVersionIsRead() {
+        when(mongoOperations.getCollectionName(Pending.class)).thenReturn("pending");
+        when(mongoOperations.upsert(any(Query.class), any(Update.class), eq(CollectionVersions.COLLECTION)))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(null);
+        when(mongoOperations.findById("pending", Document.class, CollectionVersions.COLLECTION))
+                .thenReturn(new Document(CollectionVersions.VERSION, 8L));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> CollectionVersions.bump(mongoOperations, Pending.class));
+        long version = new CollectionVersions(mongoOperations).current(Pending.class);
+
+        verify(mongoOperations, times(4)).upsert(any(Query.class), any(Update.class), eq(CollectionVersions.COLLECTION));
+        assertThat(version).isEqualTo(8L);
+    }
+
+    private static class Retried {
+    }
+
+    private static class Pending {
+    }
+}
@@ -0,0 +1,144 @@
+package be.sbs.timekeeper.application.repository;
+
+import be.sbs.timekeeper.application.beans.Session;
+import be.sbs.timekeeper.application.beans.TimesheetDay;
+import be.sbs.timekeeper.application.configuration.converter.LocalDateTimeToStringConverter;
+import be.sbs.timekeeper.application.configuration.converter.LocalDateToStringConverter;
+import be.sbs.timekeeper.application.configuration.converter.PersistenceConfiguration;
+import be.sbs.timekeeper.application.configuration.converter.TemporalMigration;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import be.sbs.timekeeper.application.valueobjects.SessionCursor;
+import be.sbs.timekeeper.application.valueobjects.WorkTimeReportRow;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.data.mongodb.core.convert.DefaultDbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+/**
+ * Reads a collection halfway through the temporal migration: every other session and timesheet day still stores
+ * its dates as strings, the others as native dates. Nothing may be left out and the order must stay chronological.
+ * <p>
+ * Needs a local mongod, like {@link QueryPlanGuardTest}.
+ */
+@TestInstance(PER_CLASS)
+@EnabledIfSystemProperty(named = "timekeeper.query-guard.mongo-uri", matches = ".+")
+class MixedTemporalFormatTest {
+
+    private static final String DATABASE = "timekeeper-mixed-temporal-format";
+    private static final String USER_ID = "u1";
+    private static final String TASK_ID = "t1";
+    private static final LocalDateTime START = LocalDateTime.of(2018, 10, 1, 8, 0);
+    private static final int SESSIONS = 10;
+
+    private MongoClient mongoClient;
+    private SessionRepositoryCustom sessionRepositoryCustom;
+    private TimesheetRepositoryCustom timesheetRepositoryCustom;
+
+    @BeforeAll
+    void seed() {
+        mongoClient = new MongoClient(new MongoClientURI(System.getProperty("timekeeper.query-guard.mongo-uri")));
+        mongoClient.dropDatabase(DATABASE);
+        MongoTemplate mongoTemplate = createTemplate();
+        sessionRepositoryCustom = new SessionRepositoryCustom(mongoTemplate,
+                new TemporalMigration(mongoTemplate, PersistenceConfiguration.NATIVE_FORMAT, 1000));
+        timesheetRepositoryCustom = new TimesheetRepositoryCustom(mongoTemplate);
+
+        for (int i = 0; i < SESSIONS; i++) {
+            LocalDateTime startTime = START.plusDays(i);
+            if (i % 2 == 0) {
+                //not migrated yet, still stored the way the string format writes it
+                LocalDateTimeToStringConverter dateTime = new LocalDateTimeToStringConverter();
+                mongoTemplate.getCollection(mongoTemplate.getCollectionName(Session.class)).insertOne(new Document("taskId", TASK_ID)
+                        .append("userId", USER_ID)
+                        .append("startTime", dateTime.convert(startTime))
+                        .append("endTime", dateTime.convert(startTime.plusHours(1))));
+                mongoTemplate.getCollection(mongoTemplate.getCollectionName(TimesheetDay.class)).insertOne(new Document("_id", TimesheetDay.idOf(USER_ID, startTime.toLocalDate()))
+                        .append("userId", USER_ID)
+                        .append("day", new LocalDateToStringConverter().convert(startTime.toLocalDate()))
+                        .append("totalSeconds", 3600L));
+            } else {
+                mongoTemplate.insert(new Session(null, TASK_ID, USER_ID, startTime, startTime.plusHours(1), null));
+                mongoTemplate.insert(new TimesheetDay(USER_ID, startTime.toLocalDate()));
+            }
+        }
+    }
+
+    @AfterAll
+    void cleanUp() {
+        mongoClient.dropDatabase(DATABASE);
+        mongoClient.close();
+    }
+
+    @Test
+    void pagesReturnEverySessionInChronologicalOrder() {
+        List<LocalDateTime> startTimes = new ArrayList<>();
+        SessionCursor cursor = null;
+        List<Session> page;
+        do {
+            page = sessionRepositoryCustom.findSessionsPage(TASK_ID, null, null, null, cursor, 3, FieldSelection.ALL);
+            page.forEach(session -> startTimes.add(session.getStartTime()));
+            cursor = page.isEmpty() ? null : SessionCursor.after(page.get(page.size() - 1));
+        } while (page.size() == 3);
+
+        assertThat(startTimes).hasSize(SESSIONS).isSorted();
+    }
+
+    @Test
+    void rangeMatchesBothFormats() {
+        List<Session> sessions = sessionRepositoryCustom.findSessionsPage(null, USER_ID, START.plusDays(2), START.plusDays(6), null, 100, FieldSelection.ALL);
+
+        assertThat(sessions).extracting(Session::getStartTime)
+                .containsExactly(START.plusDays(2), START.plusDays(3), START.plusDays(4), START.plusDays(5));
+    }
+
+    @Test
+    void reportsCountBothFormats() {
+        List<WorkTimeReportRow> rows = sessionRepositoryCustom.aggregateWorkTimePerUser(START, START.plusDays(SESSIONS));
+
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0).getSessionCount()).isEqualTo(SESSIONS);
+    }
+
+    @Test
+    void timesheetsFindBothFormats() {
+        List<LocalDate> days = timesheetRepositoryCustom.findDays(USER_ID, START.toLocalDate(), START.toLocalDate().plusDays(SESSIONS - 1)).stream()
+                .map(TimesheetDay::getDay)
+                .collect(Collectors.toList());
+
+        assertThat(days).hasSize(SESSIONS).isSorted();
+    }
+
+    private MongoTemplate createTemplate() {
+        MongoDbFactory mongoDbFactory = new SimpleMongoDbFactory(mongoClient, DATABASE);
+        MongoCustomConversions conversions = new PersistenceConfiguration().customConversions(PersistenceConfiguration.NATIVE_FORMAT);
+
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+
+        MappingMongoConverter converter = new MappingMongoConverter(new DefaultDbRefResolver(mongoDbFactory), mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return new MongoTemplate(mongoDbFactory, converter);
+    }
+}
@@ -0,0 +1,250 @@
+package be.sbs.timekeeper.application.repository;
+
+import be.sbs.timekeeper.application.beans.Project;
+import be.sbs.timekeeper.application.beans.Session;
+import be.sbs.timekeeper.application.beans.Task;
+import be.sbs.timekeeper.application.beans.User;
+import be.sbs.timekeeper.application.configuration.converter.PersistenceConfiguration;
+import be.sbs.timekeeper.application.configuration.converter.TemporalMigration;
+import be.sbs.timekeeper.application.configuration.index.MongoIndexManager;
+import be.sbs.timekeeper.application.enums.Priority;
+import be.sbs.timekeeper.application.enums.ProjectStatus;
+import be.sbs.timekeeper.application.enums.TaskStatus;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import be.sbs.timekeeper.application.valueobjects.PatchOperation;
+import be.sbs.timekeeper.application.valueobjects.SessionCursor;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.data.mongodb.core.convert.DefaultDbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+/**
+ * Runs every repository query against a seeded database with the production index set and fails when
+ * a query scans a whole collection or examines far more documents than it returns.
+ * The plans are read from the Mongo profiler, so this checks the queries exactly as the repositories send them.
+ * <p>
+ * Needs a local mongod: {@code mvn test -P query-plan-guard} or {@code -Dtimekeeper.query-guard.mongo-uri=mongodb://localhost:27017}.
+ */
+@TestInstance(PER_CLASS)
+@EnabledIfSystemProperty(named = "timekeeper.query-guard.mongo-uri", matches = ".+")
+class QueryPlanGuardTest {
+
+    private static final String DATABASE = "timekeeper-query-guard";
+    private static final int USERS = 200;
+    private static final int PROJECTS = 500;
+    private static final int TASKS_PER_PROJECT = 20;
+    private static final int SESSIONS_PER_TASK = 10;
+    private static final int MAX_EXAMINED_PER_RETURNED = 10;
+
+    /**
+     * Queries that are allowed to scan, with the reason why.
+     */
+    private static final Map<String, String> KNOWN_SCANS = new HashMap<>();
+
+    static {
+        KNOWN_SCANS.put("TaskRepositoryCustom.streamTaskNames", "loads the autocomplete index at startup");
+        KNOWN_SCANS.put("ProjectRepositoryCustom.streamProjectNames", "loads the autocomplete index at startup");
+    }
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+
+    private SessionRepositoryCustom sessionRepositoryCustom;
+    private TaskRepositoryCustom taskRepositoryCustom;
+    private ProjectRepositoryCustom projectRepositoryCustom;
+    private UserRepositoryCustom userRepositoryCustom;
+    private UserRepository userRepository;
+
+    private final List<User> users = new ArrayList<>();
+    private final List<Project> projects = new ArrayList<>();
+    private final List<Task> tasks = new ArrayList<>();
+    private final List<Session> sessions = new ArrayList<>();
+    private final List<String> violations = new ArrayList<>();
+
+    @BeforeAll
+    void seed() {
+        mongoClient = new MongoClient(new MongoClientURI(System.getProperty("timekeeper.query-guard.mongo-uri")));
+        mongoClient.dropDatabase(DATABASE);
+        mongoTemplate = createTemplate();
+
+        sessionRepositoryCustom = new SessionRepositoryCustom(mongoTemplate, new TemporalMigration(mongoTemplate, PersistenceConfiguration.STRING_FORMAT, 1000));
+        taskRepositoryCustom = new TaskRepositoryCustom(mongoTemplate);
+        projectRepositoryCustom = new ProjectRepositoryCustom(mongoTemplate);
+        userRepositoryCustom = new UserRepositoryCustom(mongoTemplate);
+        MongoRepositoryFactory repositoryFactory = new MongoRepositoryFactory(mongoTemplate);
+        userRepository = repositoryFactory.getRepository(UserRepository.class);
+
+        for (int i = 0; i < USERS; i++) {
+            users.add(new User(null, "user" + i, "$2a$10$hash" + i, "token" + i, true, "user" + i + "@timekeeper.be", null, "reset" + i, null));
+        }
+        mongoTemplate.insert(users, User.class);
+
+        for (int i = 0; i < PROJECTS; i++) {
+            projects.add(new Project(null, "project " + i, "description of project " + i, LocalDate.now().plusDays(i), ProjectStatus.IN_PROGRESS));
+        }
+        mongoTemplate.insert(projects, Project.class);
+
+        for (Project project : projects) {
+            for (int i = 0; i < TASKS_PER_PROJECT; i++) {
+                tasks.add(new Task(null, "task " + i + " of " + project.getName(), "description of task " + i, project.getId(),
+                        LocalDateTime.now(), Priority.MEDIUM, TaskStatus.IN_PROGRESS));
+            }
+        }
+        mongoTemplate.insert(tasks, Task.class);
+
+        LocalDateTime start = LocalDateTime.of(2018, 1, 1, 8, 0);
+        for (int t = 0; t < tasks.size(); t++) {
+            List<Session> batch = new ArrayList<>();
+            for (int i = 0; i < SESSIONS_PER_TASK; i++) {
+                String userId = users.get((t + i) % USERS).getId();
+                LocalDateTime startTime = start.plusHours((long) t * SESSIONS_PER_TASK + i);
+                batch.add(new Session(null, tasks.get(t).getId(), userId, startTime, startTime.plusHours(1), Duration.ofHours(1)));
+            }
+            mongoTemplate.insert(batch, Session.class);
+            sessions.addAll(batch);
+        }
+        for (int i = 0; i < USERS / 2; i++) {
+            Session running = new Session(null, tasks.get(i).getId(), users.get(i).getId(), LocalDateTime.now(), null, null);
+            running.setRunning(true);
+            mongoTemplate.insert(running);
+        }
+
+        //the first boot flags the legacy running sessions, the check below is every boot after it
+        sessionRepositoryCustom.flagLegacyRunningSessions();
+        new MongoIndexManager(mongoTemplate).afterSingletonsInstantiated();
+    }
+
+    @AfterAll
+    void cleanUp() {
+        mongoClient.dropDatabase(DATABASE);
+        mongoClient.close();
+    }
+
+    @Test
+    void everyRepositoryQueryUsesAnIndex() {
+        User user = users.get(7);
+        Task task = tasks.get(42);
+        Project project = projects.get(13);
+        Session session = sessions.get(1234);
+
+        check("SessionRepositoryCustom.flagLegacyRunningSessions", () -> sessionRepositoryCustom.flagLegacyRunningSessions());
+        check("SessionRepositoryCustom.findSessionsByTaskId", () -> sessionRepositoryCustom.findSessionsByTaskId(task.getId()));
+        check("SessionRepositoryCustom.findSessionsByUserId", () -> sessionRepositoryCustom.findSessionsByUserId(user.getId()));
+        check("SessionRepositoryCustom.findSessionsByTaskIdAndUserId", () -> sessionRepositoryCustom.findSessionsByTaskIdAndUserId(task.getId(), user.getId()));
+        SessionCursor cursor = SessionCursor.after(session);
+        check("SessionRepositoryCustom.findSessionsPage", () -> sessionRepositoryCustom.findSessionsPage(null, null, null, null, cursor, 501, FieldSelection.ALL));
+        check("SessionRepositoryCustom.findSessionsPage(user, range)", () -> sessionRepositoryCustom.findSessionsPage(null, user.getId(),
+                session.getStartTime().minusDays(30), session.getStartTime(), null, 501, FieldSelection.ALL));
+        check("SessionRepositoryCustom.findSessionsPage(task, cursor)", () -> sessionRepositoryCustom.findSessionsPage(task.getId(), null, null, null, cursor, 501, FieldSelection.ALL));
+        check("SessionRepositoryCustom.findActiveSessions", () -> sessionRepositoryCustom.findActiveSessions());
+        check("SessionRepositoryCustom.findActiveSessionByUserId", () -> sessionRepositoryCustom.findActiveSessionByUserId(user.getId()));
+        check("SessionRepositoryCustom.saveOperations", () -> sessionRepositoryCustom.saveOperations(session.getId(), Collections.singletonList(new PatchOperation("replace", "/workTime", "02:00:00"))));
+        check("SessionRepositoryCustom.replace", () -> sessionRepositoryCustom.replace(session));
+        check("SessionRepositoryCustom.stopRunningSession", () -> sessionRepositoryCustom.stopRunningSession(session.getId(), LocalDateTime.now(), Duration.ofHours(1)));
+
+        check("TaskRepositoryCustom.findTasksByProjectId", () -> taskRepositoryCustom.findTasksByProjectId(project.getId(), FieldSelection.ALL));
+        check("TaskRepositoryCustom.saveOperations", () -> taskRepositoryCustom.saveOperations(task.getId(), Collections.singletonList(new PatchOperation("replace", "/priority", Priority.HIGH.name()))));
+        check("TaskRepositoryCustom.saveOperations(project)", () -> taskRepositoryCustom.saveOperations(null, project.getId(), EnumSet.of(TaskStatus.READY_TO_START, TaskStatus.IN_PROGRESS), Collections.singletonList(new PatchOperation("replace", "/priority", Priority.LOW.name()))));
+        check("TaskRepositoryCustom.replace", () -> taskRepositoryCustom.replace(task));
+        check("TaskRepositoryCustom.updateTaskStatus", () -> taskRepositoryCustom.updateTaskStatus(task.getId(), TaskStatus.DONE));
+        check("TaskRepositoryCustom.countTasksPerProject", () -> taskRepositoryCustom.countTasksPerProject(Collections.singletonList(project.getId())));
+        check("TaskRepositoryCustom.findByKeyword", () -> taskRepositoryCustom.findByKeyword("499", PageRequest.of(0, 20), FieldSelection.ALL));
+        check("TaskRepositoryCustom.findTaskName", () -> taskRepositoryCustom.findTaskName(task.getId()));
+        check("TaskRepositoryCustom.streamTaskNames", () -> taskRepositoryCustom.streamTaskNames().forEachRemaining(name -> { }));
+
+        check("ProjectRepositoryCustom.saveOperations", () -> projectRepositoryCustom.saveOperations(project.getId(), Collections.singletonList(new PatchOperation("replace", "/description", "changed"))));
+        check("ProjectRepositoryCustom.saveOperations(ids)", () -> projectRepositoryCustom.saveOperations(Collections.singletonList(project.getId()), EnumSet.of(ProjectStatus.READY_TO_START, ProjectStatus.IN_PROGRESS), Collections.singletonList(new PatchOperation("replace", "/status", ProjectStatus.IN_PROGRESS.name()))));
+        check("ProjectRepositoryCustom.replace", () -> projectRepositoryCustom.replace(project));
+        check("ProjectRepositoryCustom.incrementTaskCount", () -> projectRepositoryCustom.incrementTaskCount(project.getId(), 1));
+        check("ProjectRepositoryCustom.findByKeyword", () -> projectRepositoryCustom.findByKeyword("499", PageRequest.of(0, 20), FieldSelection.ALL));
+        check("ProjectRepositoryCustom.findProjectName", () -> projectRepositoryCustom.findProjectName(project.getId()));
+        check("ProjectRepositoryCustom.streamProjectNames", () -> projectRepositoryCustom.streamProjectNames().forEachRemaining(name -> { }));
+
+        check("UserRepository.findFirstByName", () -> userRepository.findFirstByName(user.getName()));
+        check("UserRepository.findFirstByToken", () -> userRepository.findFirstByToken(user.getToken()));
+        check("UserRepository.findFirstByEmail", () -> userRepository.findFirstByEmail(user.getEmail()));
+        check("UserRepository.findFirstByNameAndResetPasswordToken", () -> userRepository.findFirstByNameAndResetPasswordToken(user.getName(), user.getResetPasswordToken()));
+        check("UserRepositoryCustom.replacePasswordHash", () -> userRepositoryCustom.replacePasswordHash(user.getId(), user.getPassword(), "$2a$12$rehashed"));
+
+        //deletes last, they remove seeded data
+        check("SessionRepositoryCustom.deleteSessionsFromTaskId", () -> sessionRepositoryCustom.deleteSessionsFromTaskId(task.getId()));
+        check("SessionRepositoryCustom.deleteSessionsFromUserId", () -> sessionRepositoryCustom.deleteSessionsFromUserId(user.getId()));
+        check("TaskRepositoryCustom.deleteTasksFromProject", () -> taskRepositoryCustom.deleteTasksFromProject(project.getId()));
+
+        assertThat(violations).as("queries that don't use an index properly").isEmpty();
+    }
+
+    private void check(String name, Runnable query) {
+        Document profilingOff = new Document("profile", 0);
+        mongoTemplate.getDb().runCommand(profilingOff);
+        mongoTemplate.getDb().getCollection("system.profile").drop();
+        mongoTemplate.getDb().runCommand(new Document("profile", 2));
+        query.run();
+        mongoTemplate.getDb().runCommand(profilingOff);
+
+        List<String> collections = Arrays.asList("session", "task", "project", "user");
+        for (Document operation : mongoTemplate.getDb().getCollection("system.profile").find()) {
+            String namespace = operation.getString("ns");
+            String planSummary = operation.getString("planSummary");
+            if (planSummary == null || namespace == null || !collections.contains(namespace.substring(namespace.indexOf('.') + 1))) {
+                continue;
+            }
+
+            long examined = number(operation, "docsExamined");
+            long returned = Math.max(number(operation, "nreturned"),
+                    Math.max(number(operation, "nMatched"), number(operation, "ndeleted")));
+            boolean scansCollection = planSummary.contains("COLLSCAN");
+            boolean examinesTooMuch = examined > Math.max(returned, 1) * MAX_EXAMINED_PER_RETURNED;
+
+            if ((scansCollection || examinesTooMuch) && !KNOWN_SCANS.containsKey(name)) {
+                violations.add(name + ": " + planSummary + ", examined " + examined + " returned " + returned);
+            }
+        }
+    }
+
+    private static long number(Document operation, String field) {
+        Object value = operation.get(field);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private MongoTemplate createTemplate() {
+        MongoDbFactory mongoDbFactory = new SimpleMongoDbFactory(mongoClient, DATABASE);
+        MongoCustomConversions conversions = new PersistenceConfiguration().customConversions(PersistenceConfiguration.STRING_FORMAT);
+
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+
+        MappingMongoConverter converter = new MappingMongoConverter(new DefaultDbRefResolver(mongoDbFactory), mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return new MongoTemplate(mongoDbFactory, converter);
+    }
+}
@@ -0,0 +1,138 @@
+package be.sbs.timekeeper.application.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SignedTokenServiceTest {
+
+    private static final String SECRET = "shared-secret";
+    private static final String USER_ID = "u1";
+    private static final Instant ISSUED_AT = Instant.parse("2018-10-12T09:50:00Z");
+
+    @Test
+    void anIssuedTokenVerifies() {
+        SignedTokenService service = signedAt(ISSUED_AT);
+
+        String token = service.issue(USER_ID);
+
+        assertThat(service.isSignedToken(token)).isTrue();
+        assertThat(token.split("\\.")).hasSize(6);
+        assertThat(service.verify(token)).contains(USER_ID);
+    }
+
+    @Test
+    void anExpiredTokenIsRejected() {
+        String token = signedAt(ISSUED_AT).issue(USER_ID);
+
+        assertThat(signedAt(ISSUED_AT.plus(Duration.ofMinutes(59))).verify(token)).contains(USER_ID);
+        assertThat(signedAt(ISSUED_AT.plus(Duration.ofMinutes(60))).verify(token)).isEmpty();
+    }
+
+    @Test
+    void aTokenOfThePreviousKeyVerifiesAfterTheRotation() {
+        String token = signedAt(ISSUED_AT).issue(USER_ID);
+        SignedTokenService rotated = signedAt(ISSUED_AT.plus(Duration.ofMinutes(30)));
+
+        assertThat(keyId(rotated.issue(USER_ID))).isEqualTo(keyId(token) + 1);
+        assertThat(rotated.verify(token)).contains(USER_ID);
+    }
+
+    @Test
+    void aTokenOfAnotherSecretIsRejected() {
+        String token = new SignedTokenService("signed", "other-secret", Duration.ofMinutes(60), Duration.ofMinutes(60),
+                Clock.fixed(ISSUED_AT, ZoneOffset.UTC)).issue(USER_ID);
+
+        assertThat(signedAt(ISSUED_AT).verify(token)).isEmpty();
+    }
+
+    @Test
+    void anUnknownKeyIdIsRejected() {
+        SignedTokenService service = signedAt(ISSUED_AT);
+        String[] parts = service.issue(USER_ID).split("\\.");
+
+        parts[1] = Long.toString(Long.parseLong(parts[1]) + 1);
+        assertThat(service.verify(String.join(".", parts))).isEmpty();
+        parts[1] = Long.toString(Long.parseLong(parts[1]) - 3);
+        assertThat(service.verify(String.join(".", parts))).isEmpty();
+        parts[1] = "key";
+        assertThat(service.verify(String.join(".", parts))).isEmpty();
+    }
+
+    @Test
+    void aTamperedPayloadIsRejected() {
+        SignedTokenService service = signedAt(ISSUED_AT);
+        String[] parts = service.issue(USER_ID).split("\\.");
+
+        parts[2] = "u2";
+        assertThat(service.verify(String.join(".", parts))).isEmpty();
+    }
+
+    @Test
+    void aTamperedExpiryIsRejected() {
+        SignedTokenService service = signedAt(ISSUED_AT);
+        String[] parts = service.issue(USER_ID).split("\\.");
+
+        parts[4] = Long.toString(Long.parseLong(parts[4]) + 3600);
+        assertThat(service.verify(String.join(".", parts))).isEmpty();
+    }
+
+    @Test
+    void aTamperedSignatureIsRejected() {
+        SignedTokenService service = signedAt(ISSUED_AT);
+        String[] parts = service.issue(USER_ID).split("\\.");
+
+        parts[5] = (parts[5].charAt(0) == 'A' ? 'B' : 'A') + parts[5].substring(1);
+        assertThat(service.verify(String.join(".", parts))).isEmpty();
+        parts[5] = "not*base64";
+        assertThat(service.verify(String.join(".", parts))).isEmpty();
+    }
+
+    @Test
+    void aTokenWithoutSixSegmentsIsRejected() {
+        SignedTokenService service = signedAt(ISSUED_AT);
+        String token = service.issue(USER_ID);
+
+        assertThat(service.verify(token.substring(0, token.lastIndexOf('.')))).isEmpty();
+        assertThat(service.verify(token + ".extra")).isEmpty();
+        assertThat(service.verify("v1")).isEmpty();
+    }
+
+    @Test
+    void anOpaqueTokenIsNotASignedToken() {
+        SignedTokenService service = signedAt(ISSUED_AT);
+
+        assertThat(service.isSignedToken("5f1c2d3e-opaque")).isFalse();
+        assertThat(service.verify("5f1c2d3e-opaque")).isEmpty();
+        assertThat(service.verify(null)).isEmpty();
+    }
+
+    @Test
+    void signedModeNeedsASecret() {
+        assertThrows(IllegalStateException.class, () -> new SignedTokenService("signed", " ", Duration.ofMinutes(60),
+                Duration.ofMinutes(60), Clock.fixed(ISSUED_AT, ZoneOffset.UTC)));
+        assertThrows(IllegalStateException.class, () -> new SignedTokenService("signed", "", 60, 60));
+    }
+
+    @Test
+    void opaqueModeStartsWithoutASecret() {
+        SignedTokenService service = new SignedTokenService("opaque", "", 60, 60);
+
+        assertThat(service.isEnabled()).isFalse();
+        assertThat(signedAt(Instant.now()).verify(service.issue(USER_ID))).isEmpty();
+    }
+
+    private static SignedTokenService signedAt(Instant now) {
+        return new SignedTokenService("signed", SECRET, Duration.ofMinutes(60), Duration.ofMinutes(60), Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static long keyId(String token) {
+        return Long.parseLong(token.split("\\.")[1]);
+    }
+}
@@ -0,0 +1,91 @@
+package be.sbs.timekeeper.application.security;
+
+import be.sbs.timekeeper.application.beans.User;
+import be.sbs.timekeeper.application.repository.UserRepository;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+/**
+ * Compares the per-request authentication cost of opaque tokens (one Mongo lookup) and signed tokens (one HMAC).
+ * Run with {@code -Dtimekeeper.benchmark.mongo-uri=mongodb://localhost:27017}.
+ */
+@TestInstance(PER_CLASS)
+@EnabledIfSystemProperty(named = "timekeeper.benchmark.mongo-uri", matches = ".+")
+class TokenAuthenticationBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenAuthenticationBenchmark.class);
+
+    private static final int USERS = 1_000;
+    private static final int WARMUP_ROUNDS = 5_000;
+    private static final int MEASURED_ROUNDS = 20_000;
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private UserRepository userRepository;
+    private SignedTokenService signedTokenService;
+    private final List<String> opaqueTokens = new ArrayList<>();
+    private final List<String> signedTokens = new ArrayList<>();
+
+    @BeforeAll
+    void seed() {
+        mongoClient = new MongoClient(new MongoClientURI(System.getProperty("timekeeper.benchmark.mongo-uri")));
+        mongoTemplate = new MongoTemplate(mongoClient, "timekeeper-benchmark");
+        mongoTemplate.dropCollection(User.class);
+        userRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(UserRepository.class);
+        signedTokenService = new SignedTokenService("signed", "benchmark-secret", Duration.ofHours(1), Duration.ofHours(1), Clock.systemUTC());
+
+        for (int i = 0; i < USERS; i++) {
+            String token = UUID.randomUUID().toString();
+            User user = userRepository.save(new User(null, "user" + i, "password", token, true, "user" + i + "@timekeeper.be", null, null, null));
+            opaqueTokens.add(token);
+            signedTokens.add(signedTokenService.issue(user.getId()));
+        }
+    }
+
+    @AfterAll
+    void cleanUp() {
+        mongoTemplate.dropCollection(User.class);
+        mongoClient.close();
+    }
+
+    @Test
+    void opaqueTokenLookup() {
+        report("opaque", opaqueTokens, token -> userRepository.findFirstByToken(token).isPresent());
+    }
+
+    @Test
+    void signedTokenVerification() {
+        report("signed", signedTokens, token -> signedTokenService.verify(token).isPresent());
+    }
+
+    private void report(String mode, List<String> tokens, Predicate<String> authenticate) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            assertThat(authenticate.test(tokens.get(i % tokens.size()))).isTrue();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            authenticate.test(tokens.get(i % tokens.size()));
+        }
+        long nanosPerOperation = (System.nanoTime() - start) / MEASURED_ROUNDS;
+        LOGGER.info("token authentication [{}]: {} ns/op", mode, nanosPerOperation);
+    }
+}
@@ -0,0 +1,44 @@
+package be.sbs.timekeeper.application.security;
+
+import be.sbs.timekeeper.application.beans.User;
+import be.sbs.timekeeper.application.configuration.invalidation.LoopbackInvalidationBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenCacheTest {
+
+    private final LoopbackInvalidationBus bus = new LoopbackInvalidationBus();
+    private final TokenCache tokenCache = new TokenCache(new SimpleMeterRegistry(), bus, "a", 100, 300);
+    private final TokenCache tokenCacheOnNodeB = new TokenCache(new SimpleMeterRegistry(), bus, "b", 100, 300);
+
+    @Test
+    void changesToAReturnedUserAreNotCached() {
+        User stored = new User("u1", "name", "$2a$12$hash", "token", true, "name@example.com", null, null, null);
+
+        User first = tokenCache.get("token", token -> Optional.of(stored)).get();
+        first.setSelectedTask("t1");
+        User second = tokenCache.get("token", token -> Optional.empty()).get();
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getSelectedTask()).isNull();
+    }
+
+    @Test
+    void invalidatingAUserDropsItsTokensOnEveryInstance() {
+        User stored = new User("u1", "name", "$2a$12$hash", "token", true, "name@example.com", null, null, null);
+        User other = new User("u2", "other", "$2a$12$hash", "other-token", true, "other@example.com", null, null, null);
+        tokenCacheOnNodeB.get("token", token -> Optional.of(stored));
+        tokenCacheOnNodeB.get("signed-token", token -> Optional.of(stored));
+        tokenCacheOnNodeB.get("other-token", token -> Optional.of(other));
+
+        tokenCache.invalidate("u1");
+
+        assertThat(tokenCacheOnNodeB.get("token", token -> Optional.empty())).isEmpty();
+        assertThat(tokenCacheOnNodeB.get("signed-token", token -> Optional.empty())).isEmpty();
+        assertThat(tokenCacheOnNodeB.get("other-token", token -> Optional.empty())).isPresent();
+    }
+}
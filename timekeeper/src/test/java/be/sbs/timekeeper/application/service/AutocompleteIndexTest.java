@@ -0,0 +1,95 @@
+package be.sbs.timekeeper.application.service;
+
+import be.sbs.timekeeper.application.beans.Project;
+import be.sbs.timekeeper.application.beans.Task;
+import be.sbs.timekeeper.application.configuration.CacheConfig;
+import be.sbs.timekeeper.application.configuration.invalidation.CacheInvalidation;
+import be.sbs.timekeeper.application.configuration.invalidation.LoopbackInvalidationBus;
+import be.sbs.timekeeper.application.enums.Priority;
+import be.sbs.timekeeper.application.enums.ProjectStatus;
+import be.sbs.timekeeper.application.enums.SuggestionType;
+import be.sbs.timekeeper.application.enums.TaskStatus;
+import be.sbs.timekeeper.application.repository.ProjectRepositoryCustom;
+import be.sbs.timekeeper.application.repository.TaskRepositoryCustom;
+import be.sbs.timekeeper.application.valueobjects.Suggestion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AutocompleteIndexTest {
+
+    @Mock
+    private TaskRepositoryCustom taskRepositoryCustom;
+
+    @Mock
+    private ProjectRepositoryCustom projectRepositoryCustom;
+
+    private LoopbackInvalidationBus invalidationBus;
+    private AutocompleteIndex autocompleteIndex;
+
+    @BeforeEach
+    void setUp() {
+        invalidationBus = new LoopbackInvalidationBus();
+        autocompleteIndex = new AutocompleteIndex(taskRepositoryCustom, projectRepositoryCustom, invalidationBus);
+        autocompleteIndex.putProject(new Project("p1", "Timekeeper", null, null, ProjectStatus.IN_PROGRESS));
+        autocompleteIndex.putTask(task("t1", "Monthly report", "p1"));
+        autocompleteIndex.putTask(task("t2", "Report design", "p1"));
+        autocompleteIndex.putTask(task("t3", "Réunion équipe", "p2"));
+    }
+
+    @Test
+    void matchesTheStartOfEveryWordIgnoringCaseAndAccents() {
+        assertThat(ids(autocompleteIndex.complete("REP", null, 10))).containsExactly("t1", "t2");
+        assertThat(ids(autocompleteIndex.complete("reu", null, 10))).containsExactly("t3");
+        assertThat(ids(autocompleteIndex.complete("port", null, 10))).isEmpty();
+    }
+
+    @Test
+    void limitsAndFiltersTheSuggestions() {
+        assertThat(ids(autocompleteIndex.complete("re", null, 1))).containsExactly("t1");
+        assertThat(ids(autocompleteIndex.complete("time", SuggestionType.TASK, 10))).isEmpty();
+        assertThat(ids(autocompleteIndex.complete("time", SuggestionType.PROJECT, 10))).containsExactly("p1");
+    }
+
+    @Test
+    void renamesAndRemovesReplaceTheOldKeys() {
+        autocompleteIndex.rename(SuggestionType.TASK, "t1", "Weekly summary");
+        autocompleteIndex.removeTasksOfProject("p2");
+
+        assertThat(ids(autocompleteIndex.complete("re", null, 10))).containsExactly("t2");
+        assertThat(autocompleteIndex.complete("week", null, 10)).extracting(Suggestion::getProjectId).containsExactly("p1");
+    }
+
+    @Test
+    void changesOnOtherInstancesAreReadBack() {
+        when(projectRepositoryCustom.findProjectName("p1")).thenReturn(Optional.empty());
+        when(taskRepositoryCustom.findTaskName("t4")).thenReturn(Optional.of(task("t4", "Release", "p3")));
+
+        invalidationBus.publish(new CacheInvalidation("other", CacheConfig.PROJECTS, "p1", Instant.now()));
+        invalidationBus.publish(new CacheInvalidation("other", CacheConfig.TASKS, "t4", Instant.now()));
+        //our own writes are applied directly, not read back
+        invalidationBus.publish(new CacheInvalidation(invalidationBus.getOrigin(), CacheConfig.TASKS, "t3", Instant.now()));
+
+        assertThat(ids(autocompleteIndex.complete("re", null, 10))).containsExactly("t4", "t3");
+        assertThat(autocompleteIndex.complete("time", null, 10)).isEmpty();
+    }
+
+    private static Task task(String id, String name, String projectId) {
+        return new Task(id, name, null, projectId, null, Priority.MEDIUM, TaskStatus.READY_TO_START);
+    }
+
+    private static List<String> ids(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getId).collect(Collectors.toList());
+    }
+}
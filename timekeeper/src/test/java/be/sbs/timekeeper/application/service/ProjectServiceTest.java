@@ -23,6 +23,8 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -39,6 +41,12 @@ public class ProjectServiceTest {
     @Mock
     private ProjectRepositoryCustom projectRepositoryCustom;
 
+    @Mock
+    private AutocompleteIndex autocompleteIndex;
+
+    @Mock
+    private SearchResultCache searchResultCache;
+
     @InjectMocks
     private ProjectService projectService;
 
@@ -46,7 +54,7 @@ public class ProjectServiceTest {
     private ArgumentCaptor<Project> projectArgumentCaptor;
 
     @Captor
-    private ArgumentCaptor<PatchOperation> patchOperationArgumentCaptor;
+    private ArgumentCaptor<List<PatchOperation>> patchOperationsArgumentCaptor;
 
 
 
@@ -125,12 +133,14 @@ public class ProjectServiceTest {
                 Project project = new Project(projectId, name, description, deadLine, status);
 
                 when(projectRepository.findById(projectId)).thenReturn(Optional.of(new Project(null, null, null, null, null)));
+                when(projectRepositoryCustom.replace(any(Project.class))).thenReturn(true);
 
                 projectService.updateProject(project);
 
-                verify(projectRepository).save(projectArgumentCaptor.capture());
+                verify(projectRepositoryCustom).replace(projectArgumentCaptor.capture());
                 Project result = projectArgumentCaptor.getValue();
                 reset(projectRepository);
+                reset(projectRepositoryCustom);
                 assertThat(project).isEqualToComparingFieldByField(result);
             }
 
@@ -195,10 +205,11 @@ public class ProjectServiceTest {
 
                 when(projectRepository.findById(PROJECT_ID))
                         .thenReturn(Optional.of(new Project(null, null, null, null, ProjectStatus.READY_TO_START)));
-                projectService.applyPatch(PROJECT_ID, operation);
+                when(projectRepositoryCustom.saveOperations(eq(PROJECT_ID), anyList())).thenReturn(true);
+                projectService.applyPatch(PROJECT_ID, Collections.singletonList(operation));
 
-                verify(projectRepositoryCustom).saveOperation(any(String.class), patchOperationArgumentCaptor.capture());
-                assertThat(patchOperationArgumentCaptor.getValue()).isEqualToComparingFieldByField(operation);
+                verify(projectRepositoryCustom).saveOperations(any(String.class), patchOperationsArgumentCaptor.capture());
+                assertThat(patchOperationsArgumentCaptor.getValue().get(0)).isEqualToComparingFieldByField(operation);
 
                 reset(projectRepositoryCustom);
             }
@@ -229,7 +240,7 @@ public class ProjectServiceTest {
                 when(projectRepository.findById(PROJECT_ID))
                         .thenReturn(Optional.of(new Project(null, null, null, null, statusExistingProject)));
                 assertThrows(BadRequestException.class,
-                        () -> projectService.applyPatch(PROJECT_ID, new PatchOperation(op, path, value)));
+                        () -> projectService.applyPatch(PROJECT_ID, Collections.singletonList(new PatchOperation(op, path, value))));
             }
 
             private Stream<Arguments> notAllowedParametersValues() {
@@ -0,0 +1,77 @@
+package be.sbs.timekeeper.application.service;
+
+import be.sbs.timekeeper.application.beans.Session;
+import be.sbs.timekeeper.application.repository.ProjectRepositoryCustom;
+import be.sbs.timekeeper.application.repository.SessionRepositoryCustom;
+import be.sbs.timekeeper.application.repository.TaskRepositoryCustom;
+import be.sbs.timekeeper.application.valueobjects.WorkTimeRollup;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RollupServiceTest {
+    private static final String TASK_ID = "task";
+    private static final String OTHER_TASK_ID = "other-task";
+    private static final String PROJECT_ID = "project";
+    private static final LocalDateTime START = LocalDateTime.of(2018, 10, 12, 9, 0);
+
+    @Mock
+    private TaskRepositoryCustom taskRepositoryCustom;
+
+    @Mock
+    private ProjectRepositoryCustom projectRepositoryCustom;
+
+    @Mock
+    private SessionRepositoryCustom sessionRepositoryCustom;
+
+    private RollupService rollupService;
+
+    @BeforeEach
+    void setUp() {
+        rollupService = new RollupService(taskRepositoryCustom, projectRepositoryCustom, sessionRepositoryCustom, new ConcurrentMapCacheManager(), 500);
+    }
+
+    @Test
+    void stoppingASessionAddsItToTaskAndProject() {
+        Session running = new Session("s", TASK_ID, "user", START, null, null);
+        Session stopped = new Session("s", TASK_ID, "user", START, START.plusHours(2), Duration.ofHours(2));
+        WorkTimeRollup expected = new WorkTimeRollup(7200, 1, START.plusHours(2));
+        when(taskRepositoryCustom.incrementRollup(TASK_ID, expected)).thenReturn(Optional.of(PROJECT_ID));
+
+        rollupService.onSessionChanged(running, stopped);
+
+        verify(projectRepositoryCustom).incrementRollup(PROJECT_ID, expected);
+    }
+
+    @Test
+    void movingASessionToAnotherTaskMovesItsTime() {
+        Session before = new Session("s", TASK_ID, "user", START, START.plusHours(1), Duration.ofHours(1));
+        Session after = new Session("s", OTHER_TASK_ID, "user", START, START.plusHours(1), Duration.ofHours(1));
+        when(taskRepositoryCustom.incrementRollup(eq(TASK_ID), any())).thenReturn(Optional.of(PROJECT_ID));
+        when(taskRepositoryCustom.incrementRollup(eq(OTHER_TASK_ID), any())).thenReturn(Optional.of(PROJECT_ID));
+
+        rollupService.onSessionChanged(before, after);
+
+        verify(taskRepositoryCustom).incrementRollup(TASK_ID, new WorkTimeRollup(-3600, -1, null));
+        verify(taskRepositoryCustom).incrementRollup(OTHER_TASK_ID, new WorkTimeRollup(3600, 1, START.plusHours(1)));
+    }
+
+    @Test
+    void startingASessionChangesNothing() {
+        rollupService.onSessionChanged(null, new Session("s", TASK_ID, "user", START, null, null));
+
+        verifyZeroInteractions(taskRepositoryCustom, projectRepositoryCustom);
+    }
+}
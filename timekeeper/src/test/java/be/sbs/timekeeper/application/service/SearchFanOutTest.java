@@ -0,0 +1,57 @@
+package be.sbs.timekeeper.application.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SearchFanOutTest {
+
+    private MeterRegistry meterRegistry;
+    private SearchFanOut searchFanOut;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        searchFanOut = new SearchFanOut(meterRegistry, 2, 4, 200);
+    }
+
+    @AfterEach
+    void tearDown() {
+        searchFanOut.shutdown();
+    }
+
+    @Test
+    void aSlowSourceIsLeftOutWithoutHoldingUpTheOthers() {
+        SearchFanOut.Lookup<String> slow = searchFanOut.submit("slow", () -> {
+            Thread.sleep(5_000);
+            return "late";
+        });
+        SearchFanOut.Lookup<String> fast = searchFanOut.submit("fast", () -> "found");
+
+        long start = System.nanoTime();
+        Optional<String> slowResult = slow.await();
+        Optional<String> fastResult = fast.await();
+
+        assertThat(slowResult).isEmpty();
+        assertThat(fastResult).contains("found");
+        assertThat(System.nanoTime() - start).isLessThan(2_000_000_000L);
+        assertThat(meterRegistry.get("timekeeper.search.source.missed").tag("source", "slow").tag("reason", "timeout").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("timekeeper.search.source").tag("source", "fast").tag("outcome", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void errorsOfASourceAreThrown() {
+        SearchFanOut.Lookup<String> failing = searchFanOut.submit("failing", () -> {
+            throw new IllegalArgumentException("broken");
+        });
+
+        assertThrows(IllegalArgumentException.class, failing::await);
+    }
+}
@@ -0,0 +1,90 @@
+package be.sbs.timekeeper.application.service;
+
+import be.sbs.timekeeper.application.beans.Project;
+import be.sbs.timekeeper.application.beans.SearchResult;
+import be.sbs.timekeeper.application.beans.Task;
+import be.sbs.timekeeper.application.configuration.CacheConfig;
+import be.sbs.timekeeper.application.configuration.invalidation.CacheInvalidation;
+import be.sbs.timekeeper.application.configuration.invalidation.LoopbackInvalidationBus;
+import be.sbs.timekeeper.application.enums.ProjectStatus;
+import be.sbs.timekeeper.application.valueobjects.FieldSelection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchResultCacheTest {
+
+    private LoopbackInvalidationBus invalidationBus;
+    private MeterRegistry meterRegistry;
+    private SearchResultCache searchResultCache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        invalidationBus = new LoopbackInvalidationBus();
+        meterRegistry = new SimpleMeterRegistry();
+        searchResultCache = new SearchResultCache(invalidationBus, meterRegistry, 100, 300);
+    }
+
+    @Test
+    void theSameKeywordIsLoadedOnce() {
+        search("Report");
+        search(" report ");
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void onlyEntriesContainingTheDocumentAreDropped() {
+        search("report");
+        search("invoice");
+
+        invalidationBus.publish(new CacheInvalidation(invalidationBus.getOrigin(), CacheConfig.PROJECTS, "p-report", Instant.now()));
+        search("report");
+        search("invoice");
+
+        assertThat(loads.get()).isEqualTo(3);
+        assertThat(meterRegistry.get("timekeeper.search.cache.invalidations").tag("reason", "document").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void onlyEntriesWhoseKeywordCanMatchTheNewTextAreDropped() {
+        search("reporting");
+        search("invoice");
+        search("");
+
+        searchResultCache.onTextChange(null, null, "Monthly reports", null);
+        search("reporting");
+        search("invoice");
+        search("");
+
+        assertThat(loads.get()).isEqualTo(5);
+        assertThat(meterRegistry.get("timekeeper.search.cache.invalidations").tag("reason", "text").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void textChangesOfOtherInstancesDropEntriesToo() {
+        search("invoice");
+
+        invalidationBus.publish(new CacheInvalidation("other", SearchResultCache.NAME, "inv mon", Instant.now()));
+        search("invoice");
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private void search(String keyword) {
+        searchResultCache.get(keyword, PageRequest.of(0, 20), FieldSelection.ALL, () -> {
+            loads.incrementAndGet();
+            Project project = new Project("p-" + keyword.trim().toLowerCase(), keyword, null, null, ProjectStatus.IN_PROGRESS);
+            return new SearchResult(Collections.<Task>emptyList(), Collections.singletonList(project));
+        });
+    }
+}
@@ -0,0 +1,155 @@
+package be.sbs.timekeeper.application.service;
+
+import be.sbs.timekeeper.application.beans.Session;
+import be.sbs.timekeeper.application.beans.User;
+import be.sbs.timekeeper.application.exception.SessionAlreadyRunningException;
+import be.sbs.timekeeper.application.exception.SessionNotFoundException;
+import be.sbs.timekeeper.application.repository.SessionRepository;
+import be.sbs.timekeeper.application.repository.SessionRepositoryCustom;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SessionServiceTest {
+
+    private static final String SESSION_ID = "s1";
+    private static final String TASK_ID = "t1";
+    private static final String USER_ID = "u1";
+    private static final LocalDateTime START_TIME = LocalDateTime.of(2018, 10, 12, 9, 0);
+
+    @Mock
+    private SessionRepository sessionRepository;
+
+    @Mock
+    private SessionRepositoryCustom sessionRepositoryCustom;
+
+    @Mock
+    private ActiveSessionRegistry activeSessionRegistry;
+
+    @Mock
+    private RollupService rollupService;
+
+    @Mock
+    private TimesheetService timesheetService;
+
+    @InjectMocks
+    private SessionService sessionService;
+
+    @Captor
+    private ArgumentCaptor<Session> sessionArgumentCaptor;
+
+    @Nested
+    @DisplayName("PUT session tests")
+    class UpdateSessionTests {
+
+        @Test
+        void test_runningSessionStaysFlagged() {
+            when(sessionRepository.findById(SESSION_ID)).thenReturn(Optional.of(runningSession()));
+            when(sessionRepositoryCustom.replace(any(Session.class))).thenReturn(true);
+
+            sessionService.updateSession(new Session(SESSION_ID, TASK_ID, USER_ID, START_TIME, null, Duration.ZERO));
+
+            verify(sessionRepositoryCustom).replace(sessionArgumentCaptor.capture());
+            assertThat(sessionArgumentCaptor.getValue().getRunning()).isTrue();
+        }
+
+        @Test
+        void test_stoppedSessionIsNotFlagged() {
+            when(sessionRepository.findById(SESSION_ID)).thenReturn(Optional.of(runningSession()));
+            when(sessionRepositoryCustom.replace(any(Session.class))).thenReturn(true);
+
+            sessionService.updateSession(new Session(SESSION_ID, TASK_ID, USER_ID, START_TIME, START_TIME.plusHours(1), Duration.ofHours(1)));
+
+            verify(sessionRepositoryCustom).replace(sessionArgumentCaptor.capture());
+            assertThat(sessionArgumentCaptor.getValue().getRunning()).isNull();
+        }
+
+        @Test
+        void test_reopeningWhileAnotherSessionRuns() {
+            Session stopped = new Session(SESSION_ID, TASK_ID, USER_ID, START_TIME, START_TIME.plusHours(1), Duration.ofHours(1));
+            when(sessionRepository.findById(SESSION_ID)).thenReturn(Optional.of(stopped));
+            when(sessionRepositoryCustom.replace(any(Session.class))).thenThrow(new DuplicateKeyException("running_1"));
+
+            assertThrows(SessionAlreadyRunningException.class,
+                    () -> sessionService.updateSession(new Session(SESSION_ID, TASK_ID, USER_ID, START_TIME, null, Duration.ZERO)));
+        }
+    }
+
+    @Nested
+    @DisplayName("Active session tests")
+    class ActiveSessionTests {
+
+        @Test
+        void test_sessionStartedOnAnotherInstance() {
+            User user = new User(USER_ID, "name", null, null, true, null, null, null, null);
+            when(activeSessionRegistry.findByUserId(USER_ID)).thenReturn(Optional.empty());
+            when(sessionRepositoryCustom.findActiveSessionByUserId(USER_ID)).thenReturn(Optional.of(runningSession()));
+
+            assertThat(sessionService.getActiveSessionByUser(user).getId()).isEqualTo(SESSION_ID);
+        }
+
+        @Test
+        void test_noActiveSession() {
+            User user = new User(USER_ID, "name", null, null, true, null, null, null, null);
+            when(activeSessionRegistry.findByUserId(USER_ID)).thenReturn(Optional.empty());
+            when(sessionRepositoryCustom.findActiveSessionByUserId(USER_ID)).thenReturn(Optional.empty());
+
+            assertThrows(SessionNotFoundException.class, () -> sessionService.getActiveSessionByUser(user));
+        }
+    }
+
+    @Nested
+    @DisplayName("Stop session tests")
+    class StopSessionTests {
+
+        @Test
+        void test_staleRegistryEntryFallsBackToTheDatabase() {
+            User user = new User(USER_ID, "name", null, null, true, null, null, null, null);
+            Session stale = new Session("s0", TASK_ID, USER_ID, START_TIME.minusDays(1), null, Duration.ZERO);
+            Session stopped = new Session(SESSION_ID, TASK_ID, USER_ID, START_TIME, START_TIME.plusHours(1), Duration.ofHours(1));
+            when(activeSessionRegistry.findByUserId(USER_ID)).thenReturn(Optional.of(stale));
+            when(sessionRepositoryCustom.stopRunningSession(eq("s0"), any(), any())).thenReturn(Optional.empty());
+            when(sessionRepositoryCustom.findActiveSessionByUserId(USER_ID)).thenReturn(Optional.of(runningSession()));
+            when(sessionRepositoryCustom.stopRunningSession(eq(SESSION_ID), any(), any())).thenReturn(Optional.of(stopped));
+
+            sessionService.stopSessionFor(user);
+
+            verify(activeSessionRegistry).untrack(stale);
+            verify(activeSessionRegistry).track(stopped);
+        }
+
+        @Test
+        void test_noRunningSessionAnywhere() {
+            User user = new User(USER_ID, "name", null, null, true, null, null, null, null);
+            when(activeSessionRegistry.findByUserId(USER_ID)).thenReturn(Optional.empty());
+            when(sessionRepositoryCustom.findActiveSessionByUserId(USER_ID)).thenReturn(Optional.empty());
+
+            assertThrows(SessionNotFoundException.class, () -> sessionService.stopSessionFor(user));
+        }
+    }
+
+    private static Session runningSession() {
+        Session session = new Session(SESSION_ID, TASK_ID, USER_ID, START_TIME, null, Duration.ZERO);
+        session.setRunning(true);
+        return session;
+    }
+}
@@ -8,8 +8,12 @@ import be.sbs.timekeeper.application.enums.ProjectStatus;
 import be.sbs.timekeeper.application.enums.TaskStatus;
 import be.sbs.timekeeper.application.exception.BadRequestException;
 import be.sbs.timekeeper.application.exception.TaskNotFoundException;
+import be.sbs.timekeeper.application.repository.CollectionVersions;
 import be.sbs.timekeeper.application.repository.TaskRepository;
 import be.sbs.timekeeper.application.repository.TaskRepositoryCustom;
+import be.sbs.timekeeper.application.valueobjects.BulkFilter;
+import be.sbs.timekeeper.application.valueobjects.BulkPatch;
+import be.sbs.timekeeper.application.valueobjects.BulkPatchResult;
 import be.sbs.timekeeper.application.valueobjects.PatchOperation;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -26,6 +30,10 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -52,6 +60,18 @@ public class TaskServiceTest {
     @Mock
     private ProjectService projectService;
 
+    @Mock
+    private RollupService rollupService;
+
+    @Mock
+    private CollectionVersions collectionVersions;
+
+    @Mock
+    private AutocompleteIndex autocompleteIndex;
+
+    @Mock
+    private SearchResultCache searchResultCache;
+
     @InjectMocks
     private TaskService taskService;
 
@@ -59,7 +79,7 @@ public class TaskServiceTest {
     private ArgumentCaptor<Task> taskArgumentCaptor;
 
     @Captor
-    private ArgumentCaptor<PatchOperation> patchOperationArgumentCaptor;
+    private ArgumentCaptor<List<PatchOperation>> patchOperationsArgumentCaptor;
 
 
     @Nested
@@ -116,6 +136,17 @@ public class TaskServiceTest {
                 assertThat(interceptInsertInDB().getStatus()).isEqualTo(TaskStatus.READY_TO_START);
             }
 
+            @Test
+            public void testTaskCountOfProjectIsIncremented() {
+                Task task = new Task(null, "name", "", PROJECT_ID, LocalDateTime.now(), Priority.MEDIUM, TaskStatus.READY_TO_START);
+
+                when(projectService.getById(PROJECT_ID))
+                        .thenReturn(new Project(null, null, null, null, ProjectStatus.READY_TO_START));
+                taskService.addTask(task);
+
+                verify(projectService).adjustTaskCount(PROJECT_ID, 1);
+            }
+
             private Task interceptInsertInDB() {
                 verify(taskRepository).insert(taskArgumentCaptor.capture());
                 Task result = taskArgumentCaptor.getValue();
@@ -165,11 +196,24 @@ public class TaskServiceTest {
             @MethodSource("allowedParametersValues")
             void test_withAllowedValues(String id, String op, String path, String value) {
                 PatchOperation patchOperation = new PatchOperation(op, path, value);
-                injectFindById(id);
+                when(taskRepositoryCustom.saveOperations(eq(id), anyList())).thenReturn(true);
 
-                taskService.applyPatch(id, patchOperation);
+                taskService.applyPatch(id, Collections.singletonList(patchOperation));
 
-                assertThat(patchOperation).isEqualToComparingFieldByField(interceptSaveToDB(id));
+                assertThat(patchOperation).isEqualToComparingFieldByField(interceptSaveToDB(id).get(0));
+            }
+
+            @Test
+            void test_allOperationsAreSavedTogether() {
+                List<PatchOperation> patchOperations = Arrays.asList(
+                        new PatchOperation("replace", "/priority", Priority.HIGH.name()),
+                        new PatchOperation("replace", "/status", TaskStatus.IN_PROGRESS.name()),
+                        new PatchOperation("replace", "/currentTime", DATE_TIME_STRING));
+                when(taskRepositoryCustom.saveOperations(eq(TASK_ID), anyList())).thenReturn(true);
+
+                taskService.applyPatch(TASK_ID, patchOperations);
+
+                assertThat(interceptSaveToDB(TASK_ID)).hasSize(3);
             }
 
             private Stream<Arguments> allowedParametersValues() {
@@ -188,10 +232,10 @@ public class TaskServiceTest {
                         Arguments.of(TASK_ID, "replace", "/status", TaskStatus.DONE.name()));
             }
 
-            private PatchOperation interceptSaveToDB(String id) {
-                verify(taskRepositoryCustom).saveOperation(eq(id), patchOperationArgumentCaptor.capture());
+            private List<PatchOperation> interceptSaveToDB(String id) {
+                verify(taskRepositoryCustom).saveOperations(eq(id), patchOperationsArgumentCaptor.capture());
 
-                PatchOperation result = patchOperationArgumentCaptor.getValue();
+                List<PatchOperation> result = patchOperationsArgumentCaptor.getValue();
                 reset(taskRepositoryCustom);
                 reset(taskRepository);
                 return result;
@@ -207,7 +251,22 @@ public class TaskServiceTest {
             @MethodSource("notAllowedParametersValues")
             void test_withNotAllowedValues(String id, String op, String path, String value) {
                 assertThrows(BadRequestException.class,
-                        () -> taskService.applyPatch(id, new PatchOperation(op, path, value)));
+                        () -> taskService.applyPatch(id, Collections.singletonList(new PatchOperation(op, path, value))));
+            }
+
+            @Test
+            void test_oneInvalidOperationRejectsThePatch() {
+                List<PatchOperation> patchOperations = Arrays.asList(
+                        new PatchOperation("replace", "/priority", Priority.HIGH.name()),
+                        new PatchOperation("replace", "/name", "renamed"));
+
+                assertThrows(BadRequestException.class, () -> taskService.applyPatch(TASK_ID, patchOperations));
+                verifyZeroInteractions(taskRepositoryCustom);
+            }
+
+            @Test
+            void test_emptyPatch() {
+                assertThrows(BadRequestException.class, () -> taskService.applyPatch(TASK_ID, Collections.emptyList()));
             }
 
             private Stream<Arguments> notAllowedParametersValues() {
@@ -220,11 +279,67 @@ public class TaskServiceTest {
             @Test
             void test_noTaskId() {
                 assertThrows(TaskNotFoundException.class,
-                        () -> taskService.applyPatch(null, new PatchOperation("replace", "/currentTime", DATE_TIME_STRING)));
+                        () -> taskService.applyPatch(null, Collections.singletonList(new PatchOperation("replace", "/currentTime", DATE_TIME_STRING))));
             }
         }
     }
 
+    @Nested
+    @DisplayName("Bulk PATCH task tests")
+    class BulkPatchTaskTests {
+
+        @Test
+        void test_closedTasksAreLeftOut() {
+            BulkPatch bulkPatch = new BulkPatch(new BulkFilter(null, PROJECT_ID, null),
+                    Collections.singletonList(new PatchOperation("replace", "/status", "Done")));
+            BulkPatchResult expected = new BulkPatchResult(3, 2);
+            when(taskRepositoryCustom.saveOperations(isNull(), eq(PROJECT_ID),
+                    eq(EnumSet.of(TaskStatus.READY_TO_START, TaskStatus.IN_PROGRESS, TaskStatus.DONE)), anyList()))
+                    .thenReturn(expected);
+
+            assertThat(taskService.applyBulkPatch(bulkPatch)).isSameAs(expected);
+            assertThat(bulkPatch.getOperations().get(0).getValue()).isEqualTo(TaskStatus.DONE.name());
+        }
+
+        @Test
+        void test_priorityKeepsTheStatusFilter() {
+            List<String> ids = Arrays.asList("t1", "t2");
+            BulkPatch bulkPatch = new BulkPatch(new BulkFilter(ids, null, null),
+                    Collections.singletonList(new PatchOperation("replace", "/priority", Priority.HIGH.name())));
+            when(taskRepositoryCustom.saveOperations(eq(ids), isNull(), isNull(), anyList())).thenReturn(new BulkPatchResult(2, 2));
+
+            assertThat(taskService.applyBulkPatch(bulkPatch).getModified()).isEqualTo(2);
+        }
+
+        @Test
+        void test_closedFilterStatusMatchesNothing() {
+            BulkPatch bulkPatch = new BulkPatch(new BulkFilter(null, PROJECT_ID, TaskStatus.CANCELED.name()),
+                    Collections.singletonList(new PatchOperation("replace", "/status", TaskStatus.IN_PROGRESS.name())));
+
+            BulkPatchResult result = taskService.applyBulkPatch(bulkPatch);
+
+            assertThat(result.getMatched()).isZero();
+            verifyZeroInteractions(taskRepositoryCustom);
+        }
+
+        @Test
+        void test_filterOnIdsOrProjectIsRequired() {
+            BulkPatch bulkPatch = new BulkPatch(new BulkFilter(null, null, TaskStatus.IN_PROGRESS.name()),
+                    Collections.singletonList(new PatchOperation("replace", "/priority", Priority.HIGH.name())));
+
+            assertThrows(BadRequestException.class, () -> taskService.applyBulkPatch(bulkPatch));
+        }
+
+        @Test
+        void test_onlyPriorityAndStatusCanBeBulkPatched() {
+            BulkPatch bulkPatch = new BulkPatch(new BulkFilter(null, PROJECT_ID, null),
+                    Collections.singletonList(new PatchOperation("replace", "/currentTime", DATE_TIME_STRING)));
+
+            assertThrows(BadRequestException.class, () -> taskService.applyBulkPatch(bulkPatch));
+            verifyZeroInteractions(taskRepositoryCustom);
+        }
+    }
+
     @Nested
     @DisplayName("PUT task tests")
     class UpdateTaskTests {
@@ -239,11 +354,13 @@ public class TaskServiceTest {
             void test_withAllowedValues(String id, String name, String description, String projectId, LocalDateTime currentTime, TaskStatus status) {
                 Task task = new Task(id, name, description, projectId, currentTime, Priority.MEDIUM, status);
                 injectFindById(id);
+                when(taskRepositoryCustom.replace(any(Task.class))).thenReturn(true);
 
                 taskService.updateTask(task);
-                verify(taskRepository).save(taskArgumentCaptor.capture());
+                verify(taskRepositoryCustom).replace(taskArgumentCaptor.capture());
                 Task result = taskArgumentCaptor.getValue();
                 reset(taskRepository);
+                reset(taskRepositoryCustom);
                 assertThat(task).isEqualToComparingFieldByField(result);
             }
 
@@ -0,0 +1,51 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import be.sbs.timekeeper.application.beans.Project;
+import be.sbs.timekeeper.application.beans.Task;
+import be.sbs.timekeeper.application.enums.ProjectStatus;
+import be.sbs.timekeeper.application.exception.BadRequestException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FieldSelectionTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().setFilterProvider(FieldSelection.defaultFilterProvider());
+
+    @Test
+    void idIsAlwaysSelected() {
+        assertThat(FieldSelection.parse("name, status", Project.class).getFields()).containsExactly("id", "name", "status");
+    }
+
+    @Test
+    void noFieldsSelectsEverything() {
+        assertThat(FieldSelection.parse(null, Project.class).isAll()).isTrue();
+        assertThat(FieldSelection.parse(" ", Project.class).isAll()).isTrue();
+    }
+
+    @Test
+    void unknownFieldIsRejected() {
+        assertThrows(BadRequestException.class, () -> FieldSelection.parse("name,serialVersionUID", Task.class));
+        assertThrows(BadRequestException.class, () -> FieldSelection.parse("deadLine", Task.class));
+    }
+
+    @Test
+    void onlySelectedPropertiesAreWritten() throws Exception {
+        Project project = new Project("p1", "name", "a long description", LocalDate.of(2018, 10, 12), ProjectStatus.READY_TO_START);
+
+        String json = objectMapper.writer(FieldSelection.parse("name", Project.class).toFilterProvider()).writeValueAsString(project);
+
+        assertThat(json).isEqualTo("{\"id\":\"p1\",\"name\":\"name\"}");
+    }
+
+    @Test
+    void everyPropertyIsWrittenWithoutSelection() throws Exception {
+        Project project = new Project("p1", "name", "a long description", null, ProjectStatus.READY_TO_START);
+
+        assertThat(objectMapper.writeValueAsString(project)).contains("\"description\":\"a long description\"", "\"numberOfTasks\":0");
+    }
+}
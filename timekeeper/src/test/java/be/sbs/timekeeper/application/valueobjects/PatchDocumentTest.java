@@ -0,0 +1,29 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PatchDocumentTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void readsAnArrayOfOperations() throws IOException {
+        PatchDocument document = objectMapper.readValue(
+                "[{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"a\"},{\"op\":\"replace\",\"path\":\"/status\",\"value\":\"DONE\"}]",
+                PatchDocument.class);
+
+        assertThat(document).extracting(PatchOperation::getPath).containsExactly("/name", "/status");
+    }
+
+    @Test
+    void readsASingleOperationAsAnArrayOfOne() throws IOException {
+        PatchDocument document = objectMapper.readValue("{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"a\"}", PatchDocument.class);
+
+        assertThat(document).extracting(PatchOperation::getPath).containsExactly("/name");
+    }
+}
@@ -0,0 +1,49 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import be.sbs.timekeeper.application.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SessionCursorTest {
+
+    @Test
+    void decodeReturnsTheEncodedPosition() {
+        LocalDateTime startTime = LocalDateTime.of(2018, 10, 12, 9, 30, 15);
+
+        SessionCursor cursor = SessionCursor.decode(new SessionCursor(startTime, "5bc0a8e2f1d1c2a3b4c5d6e7").encode());
+
+        assertThat(cursor.getStartTime()).isEqualTo(startTime);
+        assertThat(cursor.getId()).isEqualTo("5bc0a8e2f1d1c2a3b4c5d6e7");
+    }
+
+    @Test
+    void subSecondStartTimesArePreserved() {
+        LocalDateTime first = LocalDateTime.of(2018, 10, 12, 9, 30, 15, 120_000_000);
+        LocalDateTime second = first.plusNanos(500_000_000);
+
+        SessionCursor cursor = SessionCursor.decode(new SessionCursor(first, "5bc0a8e2f1d1c2a3b4c5d6e7").encode());
+
+        assertThat(cursor.getStartTime()).isEqualTo(first);
+        assertThat(cursor.getStartTime()).isBefore(second);
+    }
+
+    @Test
+    void cursorsWithoutFractionStillDecode() {
+        String legacy = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("2018-10-12T09:30:15|5bc0a8e2f1d1c2a3b4c5d6e7".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(SessionCursor.decode(legacy).getStartTime()).isEqualTo(LocalDateTime.of(2018, 10, 12, 9, 30, 15));
+    }
+
+    @Test
+    void decodeRejectsGarbage() {
+        assertThrows(BadRequestException.class, () -> SessionCursor.decode("not a cursor!"));
+        assertThrows(BadRequestException.class, () -> SessionCursor.decode("bm8tc2VwYXJhdG9y"));
+    }
+}
@@ -0,0 +1,45 @@
+package be.sbs.timekeeper.application.valueobjects;
+
+import org.assertj.core.data.MapEntry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class SessionDaySplitterTest {
+
+    @Test
+    void sessionWithinOneDayStaysOnThatDay() {
+        Map<LocalDate, Long> split = SessionDaySplitter.split(LocalDateTime.of(2018, 10, 12, 9, 0), LocalDateTime.of(2018, 10, 12, 17, 30));
+
+        assertThat(split).containsOnly(seconds(2018, 10, 12, 8 * 3600 + 1800));
+    }
+
+    @Test
+    void sessionOverMidnightIsSplit() {
+        Map<LocalDate, Long> split = SessionDaySplitter.split(LocalDateTime.of(2018, 10, 12, 22, 0), LocalDateTime.of(2018, 10, 13, 1, 15));
+
+        assertThat(split).containsExactly(seconds(2018, 10, 12, 2 * 3600), seconds(2018, 10, 13, 3600 + 900));
+    }
+
+    @Test
+    void sessionOverSeveralDaysFillsTheDaysInBetween() {
+        Map<LocalDate, Long> split = SessionDaySplitter.split(LocalDateTime.of(2018, 10, 31, 23, 0), LocalDateTime.of(2018, 11, 2, 0, 0));
+
+        assertThat(split).containsExactly(seconds(2018, 10, 31, 3600), seconds(2018, 11, 1, 24 * 3600));
+    }
+
+    @Test
+    void runningOrInvertedSessionHasNoTime() {
+        assertThat(SessionDaySplitter.split(LocalDateTime.of(2018, 10, 12, 9, 0), null)).isEmpty();
+        assertThat(SessionDaySplitter.split(LocalDateTime.of(2018, 10, 12, 9, 0), LocalDateTime.of(2018, 10, 12, 8, 0))).isEmpty();
+    }
+
+    private static MapEntry<LocalDate, Long> seconds(int year, int month, int day, long seconds) {
+        return entry(LocalDate.of(year, month, day), seconds);
+    }
+}